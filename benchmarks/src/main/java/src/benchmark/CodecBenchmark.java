@@ -0,0 +1,102 @@
+package src.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.commands.Command_Add;
+import src.database.User;
+import src.elements.Product;
+import src.logic.Codec;
+import src.logic.Packet;
+import src.logic.SerializationManager;
+import src.logic.ServerPacket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the java serialization codec against the binary codec.
+ * Measures encode and decode time of an add request and of a snapshot response.
+ * Run main to print the size of messages in both formats.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"java", "binary"})
+    public String codecName;
+
+    @Param({"1", "100", "10000"})
+    public int snapshotSize;
+
+    private Codec codec;
+    private Packet request;
+    private ServerPacket response;
+    private ByteBuffer encodedRequest;
+    private ByteBuffer encodedResponse;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = SerializationManager.forName(codecName);
+        ArrayList<Product> products = SampleData.products(snapshotSize, 10);
+        request = new Packet(new Command_Add(), new User("user1", "5baa61e4c9b93f3f0682250b6cf8331b7ee68fd8"), products.get(0));
+        response = new ServerPacket(products, null, true, false);
+        encodedRequest = payload(codec.encode(request));
+        encodedResponse = payload(codec.encode(response));
+    }
+
+    @Benchmark
+    public ByteBuffer encodeRequest() throws IOException {
+        return codec.encode(request);
+    }
+
+    @Benchmark
+    public Packet decodeRequest() throws IOException {
+        return codec.decodePacket(encodedRequest.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer encodeSnapshot() throws IOException {
+        return codec.encode(response);
+    }
+
+    @Benchmark
+    public ServerPacket decodeSnapshot() throws IOException {
+        return codec.decodeServerPacket(encodedResponse.duplicate());
+    }
+
+    private static ByteBuffer payload(ByteBuffer frame) {
+        ByteBuffer payload = frame.duplicate();
+        payload.position(payload.position() + 4);
+        return payload.slice();
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-8s %10s %14s %14s%n", "codec", "products", "request bytes", "response bytes");
+        for (String name : new String[] {"java", "binary"}) {
+            for (int size : new int[] {1, 100, 10000}) {
+                CodecBenchmark benchmark = new CodecBenchmark();
+                benchmark.codecName = name;
+                benchmark.snapshotSize = size;
+                benchmark.setup();
+                System.out.printf("%-8s %10d %14d %14d%n", name, size,
+                        benchmark.encodedRequest.remaining(), benchmark.encodedResponse.remaining());
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package src.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.database.User;
+import src.elements.Product;
+import src.logic.CollectionManager;
+
+import javax.xml.bind.ValidationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of commands of collection against the size of collection.
+ * Every command finds its products through the indexes, so the time must stay flat while the size grows.
+ * Products are kept in memory by InMemoryDBManager.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CollectionBenchmark {
+
+    private static final int USERS = 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private CollectionManager collectionManager;
+    private User owner;
+    private User stranger;
+    private User updater;
+    private Product cheap;
+    private Product expensive;
+    private Product updated;
+    private Product cycled;
+    private Random random;
+
+    @Setup
+    public void setup() throws ValidationException {
+        ArrayList<Product> products = SampleData.products(size, USERS);
+        collectionManager = new CollectionManager(new InMemoryDBManager(products));
+        random = new Random(7);
+
+        cycled = products.get(size / 2);
+        owner = new User(cycled.getHost(), "");
+        stranger = new User("stranger", "");
+
+        cheap = SampleData.product(random, USERS);
+        cheap.setPrice(1L);
+        expensive = SampleData.product(random, USERS);
+        expensive.setPrice(1_000_001L);
+        updated = SampleData.product(random, USERS);
+        updated.setId(products.get(size / 3).getId());
+        updated.setHost(products.get(size / 3).getHost());
+        updater = new User(updated.getHost(), "");
+    }
+
+    /**
+     * add_if_max which is refused: finds the max price.
+     */
+
+    @Benchmark
+    public String addIfMaxRefused() {
+        return collectionManager.addIfMax(cheap);
+    }
+
+    /**
+     * add_if_min which is refused: finds the min price.
+     */
+
+    @Benchmark
+    public String addIfMinRefused() {
+        return collectionManager.addIfMin(expensive);
+    }
+
+    /**
+     * remove_by_id of a product of another user: finds the product by id.
+     */
+
+    @Benchmark
+    public String removeByIdDenied() {
+        return collectionManager.removeById(stranger, cycled.getId());
+    }
+
+    /**
+     * update_id of a product of another user: finds the product by id.
+     */
+
+    @Benchmark
+    public String updateIdDenied() {
+        return collectionManager.updateId(stranger, updated);
+    }
+
+    /**
+     * clear of a user without products: finds the products of user.
+     */
+
+    @Benchmark
+    public String clearOfStranger() {
+        return collectionManager.clear(stranger);
+    }
+
+    /**
+     * remove_by_id of the owner followed by add of the same product with a new id.
+     */
+
+    @Benchmark
+    public String removeAndAdd() {
+        collectionManager.removeById(owner, cycled.getId());
+        return collectionManager.add(cycled);
+    }
+
+    /**
+     * update_id of the owner: replaces the product in the collection and its indexes.
+     */
+
+    @Benchmark
+    public String updateId() {
+        return collectionManager.updateId(updater, updated);
+    }
+
+    /**
+     * show after a change: the snapshot of the new version is made.
+     */
+
+    @Benchmark
+    public List<Product> showAfterChange() {
+        collectionManager.updateId(updater, updated);
+        return collectionManager.show();
+    }
+
+    /**
+     * show without changes: all readers share one snapshot.
+     */
+
+    @Benchmark
+    public List<Product> show() {
+        return collectionManager.show();
+    }
+
+    /**
+     * filter_by_unit_of_measure: lists the names of a third of the products.
+     */
+
+    @Benchmark
+    public String filterByUnitOfMeasure() {
+        return collectionManager.filterByUnitOfMeasure("GRAMS");
+    }
+
+    /**
+     * print_unique_part_number: goes through the whole collection.
+     */
+
+    @Benchmark
+    public String printUniquePartNumber() {
+        return collectionManager.printUniquePartNumber();
+    }
+}
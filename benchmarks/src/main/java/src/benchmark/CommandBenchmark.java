@@ -0,0 +1,64 @@
+package src.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.commands.*;
+import src.exceptions.InvalidCommand;
+import src.logic.CommandHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of picking a command by the line typed by user, with the commands the client registers.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandBenchmark {
+
+    @Param({"show", "remove_by_id 42", "filter_by_unit_of_measure GRAMS", "query price>=100 sort=-price limit=20"})
+    public String line;
+
+    private CommandHandler commandHandler;
+
+    @Setup
+    public void setup() {
+        commandHandler = new CommandHandler();
+        commandHandler.register("login", new Command_Login());
+        commandHandler.register("register", new Command_Register());
+        commandHandler.register("help", new Command_Help());
+        commandHandler.register("info", new Command_Info());
+        commandHandler.register("show", new Command_Show());
+        commandHandler.register("add", new Command_Add());
+        commandHandler.register("update_id", new Command_Update_By_Id());
+        commandHandler.register("remove_by_id", new Command_Remove_By_Id());
+        commandHandler.register("clear", new Command_Clear());
+        commandHandler.register("execute_script", new Command_Execute_Script(commandHandler));
+        commandHandler.register("exit", new Command_Exit());
+        commandHandler.register("add_if_max", new Command_Add_If_Max());
+        commandHandler.register("add_if_min", new Command_Add_If_Min());
+        commandHandler.register("history", new Command_History());
+        commandHandler.register("filter_by_unit_of_measure", new Command_Filter_By_Unit_Of_Measure());
+        commandHandler.register("print_unique_part_number", new Command_Print_Unique_Part_Number());
+        commandHandler.register("print_field_descending_owner", new Command_Print_Field_Descending_Owner());
+        commandHandler.register("query", new Command_Query());
+    }
+
+    @Benchmark
+    public Command pickCommand() throws InvalidCommand {
+        return commandHandler.pickCommand(line);
+    }
+}
@@ -0,0 +1,72 @@
+package src.benchmark;
+
+import src.database.DBManager;
+import src.database.InMemoryStorage;
+import src.elements.Product;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class of database stand-in for benchmarks.
+ * Keeps the given products in InMemoryStorage, so benchmarks measure the collection and not PostgreSQL,
+ * can make every change wait as long as a round trip to the database would take, and lets every user in.
+ */
+
+public class InMemoryDBManager extends DBManager {
+
+    private volatile long latency;
+
+    public InMemoryDBManager(List<Product> products) {
+        super(new InMemoryStorage(products));
+    }
+
+    /**
+     * Makes every call wait as long as a round trip to the database would take.
+     * @param latency - the time of one call in milliseconds
+     */
+
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    private void roundTrip() {
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public int createProduct(Product product) {
+        roundTrip();
+        return super.createProduct(product);
+    }
+
+    @Override
+    public void updateProduct(Product product) {
+        roundTrip();
+        super.updateProduct(product);
+    }
+
+    @Override
+    public void deleteProduct(int id) {
+        roundTrip();
+        super.deleteProduct(id);
+    }
+
+    @Override
+    public void deleteProducts(Collection<Integer> ids) {
+        roundTrip();
+        super.deleteProducts(ids);
+    }
+
+    @Override
+    public boolean checkUser(String login, String pass) {
+        roundTrip();
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package src.benchmark;
+
+import src.commands.Command_Login;
+import src.commands.Command_Query;
+import src.database.DBManager;
+import src.database.User;
+import src.logic.Codec;
+import src.logic.Packet;
+import src.logic.Query;
+import src.logic.SerializationManager;
+import src.logic.ServerPacket;
+import src.server.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Load test of the server with many clients at once.
+ * Starts a server with products in memory and a database which answers after benchmark.dbLatency milliseconds,
+ * then every client logs in and asks for a page of products in turn, so half of requests wait for the database.
+ * Prints the throughput and the percentiles of latency.
+ * Without arguments runs the pool and the virtual thread modes one after another, each in its own JVM.
+ * Usage: LoadBenchmark [pool|virtual] [clients] [requests per client].
+ * Every client takes two sockets of this process, so the limit of open files must be above twice the clients.
+ */
+
+public class LoadBenchmark {
+
+    private static final int PRODUCTS = 10000;
+    private static final int USERS = 10;
+    private static final int WARMUP_REQUESTS = 2;
+
+    public static void main(String[] args) throws Exception {
+        String clients = args.length > 1 ? args[1] : "1000";
+        String requests = args.length > 2 ? args[2] : "20";
+        if (args.length == 0) {
+            for (String mode : new String[] {"pool", "virtual"}) {
+                fork(mode, clients, requests);
+            }
+            return;
+        }
+        run(args[0], Integer.parseInt(clients), Integer.parseInt(requests));
+        System.exit(0);
+    }
+
+    private static void fork(String mode, String clients, String requests) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "-Dserver.executor=" + mode,
+                "-Dbenchmark.dbLatency=" + Long.getLong("benchmark.dbLatency", 5),
+                LoadBenchmark.class.getName(), mode, clients, requests)
+                .inheritIO().start().waitFor();
+    }
+
+    private static void run(String mode, int clients, int requests) throws Exception {
+        System.setProperty("server.executor", mode);
+        InMemoryDBManager dbManager = new InMemoryDBManager(SampleData.products(PRODUCTS, USERS));
+        dbManager.setLatency(Long.getLong("benchmark.dbLatency", 5));
+        int port = startServer(dbManager);
+
+        long[][] latencies = new long[clients][];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            int number = i;
+            Thread client = new Thread(() -> {
+                try {
+                    latencies[number] = new LoadClient(port, "user" + number).run(start, requests);
+                } catch (IOException ex) {
+                    System.out.println("Client " + number + ": " + ex.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            client.setDaemon(true);
+            client.start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - began;
+
+        long[] all = Arrays.stream(latencies).filter(l -> l != null).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println(mode + ": no requests were answered.");
+            return;
+        }
+        System.out.printf("%-8s clients = %d, requests = %d, throughput = %.0f req/s, p50 = %.2f ms, p90 = %.2f ms, "
+                        + "p99 = %.2f ms, max = %.2f ms%n", mode, clients, all.length,
+                all.length / (elapsed / 1e9), percentile(all, 50), percentile(all, 90), percentile(all, 99),
+                all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Starts a server on a free port of localhost and waits until it accepts connections.
+     * @param dbManager - the database of server
+     * @return the port of server
+     */
+
+    static int startServer(DBManager dbManager) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        Thread server = new Thread(new Server(port, Runtime.getRuntime().availableProcessors(),
+                Integer.getInteger("server.workers", 20), dbManager), "server");
+        server.setDaemon(true);
+        server.start();
+        waitForServer(port);
+        return port;
+    }
+
+    private static void waitForServer(int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (IOException ex) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server has not started.");
+    }
+
+    /**
+     * Class of client of load test. Sends a request and waits for its answer, one at a time.
+     */
+
+    private static class LoadClient {
+
+        private final Codec codec;
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+        private final User user;
+        private byte[] buffer;
+
+        LoadClient(int port, String login) throws IOException {
+            codec = SerializationManager.BINARY;
+            socket = new Socket("localhost", port);
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            user = new User(login, "password");
+            buffer = new byte[4096];
+            write(SerializationManager.handshake(codec));
+        }
+
+        /**
+         * Logs in and asks for a page of products in turn.
+         * @return the latencies in nanoseconds without the first requests
+         */
+
+        long[] run(CountDownLatch start, int requests) throws IOException {
+            try {
+                start.await();
+                long[] latencies = new long[Math.max(0, requests - WARMUP_REQUESTS)];
+                Query query = new Query().setSort(Query.Field.PRICE, true);
+                for (int i = 0; i < requests; i++) {
+                    Packet packet = i % 2 == 0 ? new Packet(new Command_Login(), user, null)
+                            : new Packet(new Command_Query(), user, query);
+                    packet.setRequestId(i + 1);
+                    long sent = System.nanoTime();
+                    write(codec.encode(packet));
+                    ServerPacket answer = read();
+                    if (i >= WARMUP_REQUESTS) {
+                        latencies[i - WARMUP_REQUESTS] = System.nanoTime() - sent;
+                    }
+                    if (i % 2 == 0) {
+                        user.setToken((String) answer.getObject());
+                    }
+                }
+                return latencies;
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted.");
+            } finally {
+                socket.close();
+            }
+        }
+
+        private void write(ByteBuffer frame) throws IOException {
+            output.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            output.flush();
+        }
+
+        private ServerPacket read() throws IOException {
+            int length = input.readInt();
+            if (length > buffer.length) {
+                buffer = new byte[length];
+            }
+            input.readFully(buffer, 0, length);
+            return codec.decodeServerPacket(ByteBuffer.wrap(buffer, 0, length));
+        }
+    }
+}
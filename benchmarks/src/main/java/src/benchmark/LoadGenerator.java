@@ -0,0 +1,416 @@
+package src.benchmark;
+
+import src.client.Client;
+import src.commands.Command;
+import src.commands.Command_Add;
+import src.commands.Command_Add_If_Max;
+import src.commands.Command_Execute_Script;
+import src.commands.Command_Login;
+import src.commands.Command_Remove_By_Id;
+import src.commands.Command_Show;
+import src.commands.Command_Update_By_Id;
+import src.database.User;
+import src.elements.Product;
+import src.logic.Packet;
+import src.logic.ServerPacket;
+import src.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the server.
+ * Simulates load.users users, every one with its own Client: they log in as user0, user1, ... and run the mix
+ * of commands given by load.mix, for example "show=40,add=20,update_id=15,remove_by_id=10,add_if_max=10,execute_script=5".
+ * In the closed mode (load.mode=closed) every user sends a request, waits for the answer and thinks for a random time
+ * of load.thinkTime milliseconds on average. In the open mode (load.mode=open) requests come at load.rate per second
+ * however fast the server answers, and the latency is counted from the moment the request was due,
+ * so a server which falls behind is not hidden by requests sent late.
+ * Without load.host starts a server on localhost with load.products products in memory, see InMemoryDBManager,
+ * and every user updates and removes its own products. With load.host and load.port loads a running server,
+ * where the users must exist with the password load.password.
+ * Prints the throughput and the percentiles of latency of every command after load.duration seconds,
+ * the first load.warmup seconds are not counted.
+ */
+
+public class LoadGenerator {
+
+    private static final String DEFAULT_MIX = "show=40,add=20,update_id=15,remove_by_id=10,add_if_max=10,execute_script=5";
+    private static final long ANSWER_TIMEOUT = 30;
+
+    /**
+     * Commands of the mix.
+     */
+
+    enum Operation {
+        SHOW("show"),
+        ADD("add"),
+        UPDATE_ID("update_id"),
+        REMOVE_BY_ID("remove_by_id"),
+        ADD_IF_MAX("add_if_max"),
+        EXECUTE_SCRIPT("execute_script");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        static Operation forName(String name) {
+            for (Operation operation : values()) {
+                if (operation.name.equals(name)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown command " + name + " in load.mix.");
+        }
+    }
+
+    private final String host;
+    private final int users;
+    private final int products;
+    private final boolean open;
+    private final int rate;
+    private final long thinkTime;
+    private final long duration;
+    private final long warmup;
+    private final String password;
+    private final ArrayList<Operation> operations;
+    private final ArrayList<Integer> weights;
+    private int totalWeight;
+
+    private final EnumMap<Operation, LatencyHistogram> latencies;
+    private final EnumMap<Operation, AtomicLong> errors;
+    private final LatencyHistogram total;
+    private final AtomicInteger inFlight;
+    private long measureFrom;
+    private long end;
+
+    /**
+     * Constructor, reads the settings from the system properties.
+     */
+
+    public LoadGenerator() {
+        host = System.getProperty("load.host");
+        users = Integer.getInteger("load.users", 50);
+        products = Integer.getInteger("load.products", 10000);
+        open = "open".equals(System.getProperty("load.mode", "closed"));
+        rate = Integer.getInteger("load.rate", 1000);
+        thinkTime = Long.getLong("load.thinkTime", 50);
+        duration = TimeUnit.SECONDS.toNanos(Long.getLong("load.duration", 30));
+        warmup = TimeUnit.SECONDS.toNanos(Long.getLong("load.warmup", 5));
+        password = System.getProperty("load.password", "password");
+        operations = new ArrayList<>();
+        weights = new ArrayList<>();
+        for (String entry : System.getProperty("load.mix", DEFAULT_MIX).split(",")) {
+            String[] pair = entry.trim().split("=");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) {
+                operations.add(Operation.forName(pair[0].trim()));
+                totalWeight += weight;
+                weights.add(totalWeight);
+            }
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no commands.");
+        }
+
+        latencies = new EnumMap<>(Operation.class);
+        errors = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new AtomicLong());
+        }
+        total = new LatencyHistogram();
+        inFlight = new AtomicInteger();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+        System.exit(0);
+    }
+
+    /**
+     * Connects the users, runs the load and prints the report.
+     */
+
+    public void run() throws Exception {
+        HashMap<String, List<Integer>> owned = new HashMap<>();
+        int port;
+        if (host == null) {
+            ArrayList<Product> data = SampleData.products(products, users);
+            for (Product product : data) {
+                owned.computeIfAbsent(product.getHost(), login -> new ArrayList<>()).add(product.getId());
+            }
+            InMemoryDBManager dbManager = new InMemoryDBManager(data);
+            dbManager.setLatency(Long.getLong("benchmark.dbLatency", 0));
+            port = LoadBenchmark.startServer(dbManager);
+        } else {
+            port = Integer.getInteger("load.port", 29666);
+        }
+        Path script = writeScript();
+
+        VirtualUser[] virtualUsers = new VirtualUser[users];
+        for (int i = 0; i < users; i++) {
+            String login = "user" + i;
+            virtualUsers[i] = new VirtualUser(i, host == null ? "localhost" : host, port, script.toString(),
+                    owned.getOrDefault(login, new ArrayList<>()));
+            virtualUsers[i].login(login);
+        }
+
+        long began = System.nanoTime();
+        measureFrom = began + warmup;
+        end = began + warmup + duration;
+        if (open) {
+            runOpen(virtualUsers, began);
+        } else {
+            runClosed(virtualUsers);
+        }
+        report();
+        Files.deleteIfExists(script);
+    }
+
+    /**
+     * Every user waits for the answer and thinks before the next request.
+     */
+
+    private void runClosed(VirtualUser[] virtualUsers) throws InterruptedException {
+        Thread[] threads = new Thread[virtualUsers.length];
+        for (int i = 0; i < virtualUsers.length; i++) {
+            VirtualUser user = virtualUsers[i];
+            threads[i] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    Operation operation = pick(user.random);
+                    long start = System.nanoTime();
+                    try {
+                        user.send(operation).get(ANSWER_TIMEOUT, TimeUnit.SECONDS);
+                        record(operation, start, System.nanoTime() - start);
+                    } catch (ExecutionException | TimeoutException ex) {
+                        fail(operation, start);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    if (thinkTime > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                                (long) (-thinkTime * Math.log(1 - user.random.nextDouble()))));
+                    }
+                }
+            }, "load-user-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Requests are sent at a fixed rate by one thread, the users take them in turn.
+     * The answers are counted on the listening threads of clients.
+     */
+
+    private void runOpen(VirtualUser[] virtualUsers, long began) throws InterruptedException {
+        Random random = new Random(42);
+        for (long n = 0; ; n++) {
+            long due = began + n * TimeUnit.SECONDS.toNanos(1) / rate;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pick(random);
+            inFlight.incrementAndGet();
+            virtualUsers[(int) (n % virtualUsers.length)].send(operation).whenComplete((answer, ex) -> {
+                if (ex == null) {
+                    record(operation, due, System.nanoTime() - due);
+                } else {
+                    fail(operation, due);
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+        long limit = System.nanoTime() + TimeUnit.SECONDS.toNanos(ANSWER_TIMEOUT);
+        while (inFlight.get() > 0 && System.nanoTime() < limit) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Operation pick(Random random) {
+        int value = random.nextInt(totalWeight);
+        int i = 0;
+        while (weights.get(i) <= value) {
+            i++;
+        }
+        return operations.get(i);
+    }
+
+    private void record(Operation operation, long start, long latency) {
+        if (start >= measureFrom) {
+            latencies.get(operation).record(latency);
+            total.record(latency);
+        }
+    }
+
+    private void fail(Operation operation, long start) {
+        if (start >= measureFrom) {
+            errors.get(operation).incrementAndGet();
+        }
+    }
+
+    private void report() {
+        double seconds = duration / 1e9;
+        System.out.printf("%s loop, users = %d, %s, %.0f s measured after %.0f s of warmup%n", open ? "open" : "closed",
+                users, open ? "offered rate = " + rate + " req/s" : "think time = " + thinkTime + " ms",
+                seconds, warmup / 1e9);
+        for (Operation operation : operations) {
+            LatencyHistogram histogram = latencies.get(operation);
+            System.out.printf("%-15s count = %d, errors = %d, p50 = %.2f ms, p90 = %.2f ms, p99 = %.2f ms, "
+                            + "max = %.2f ms%n", operation.name, histogram.getCount(), errors.get(operation).get(),
+                    histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6,
+                    histogram.percentile(99) / 1e6, histogram.getMax() / 1e6);
+        }
+        System.out.printf("%-15s count = %d, throughput = %.0f req/s, p50 = %.2f ms, p90 = %.2f ms, p99 = %.2f ms, "
+                        + "p99.9 = %.2f ms, max = %.2f ms%n", "total", total.getCount(), total.getCount() / seconds,
+                total.percentile(50) / 1e6, total.percentile(90) / 1e6, total.percentile(99) / 1e6,
+                total.percentile(99.9) / 1e6, total.getMax() / 1e6);
+        if (inFlight.get() > 0) {
+            System.out.println(inFlight.get() + " requests were not answered in " + ANSWER_TIMEOUT + " s.");
+        }
+    }
+
+    /**
+     * Writes the script run by execute_script: it shows the collection, adds a product and prints part numbers.
+     */
+
+    private static Path writeScript() throws IOException {
+        Path script = Files.createTempFile("load", ".script");
+        String text = "show\n"
+                + "add scripted\n1.5\n2.5\n100\npart1\nPCS\nowner\n180\nRED\n1\n2\n3\nlocation\n"
+                + "print_unique_part_number\n";
+        Files.write(script, text.getBytes(StandardCharsets.UTF_8));
+        return script;
+    }
+
+    /**
+     * Class of simulated user. Has its own connection and knows the ids of its products,
+     * so updates and removals are allowed by the server.
+     */
+
+    private class VirtualUser {
+
+        private final Client client;
+        private final String script;
+        private final List<Integer> owned;
+        private final Random random;
+        private final Command show;
+        private final Command add;
+        private final Command updateId;
+        private final Command removeById;
+        private final Command addIfMax;
+        private final Command_Execute_Script executeScript;
+
+        VirtualUser(int number, String host, int port, String script, List<Integer> owned) {
+            this.script = script;
+            this.owned = owned;
+            random = new Random(number);
+            client = new Client(host, port);
+            client.run();
+            Thread listener = new Thread(client::listen, "load-listener-" + number);
+            listener.setDaemon(true);
+            listener.start();
+            show = new Command_Show();
+            add = new Command_Add();
+            updateId = new Command_Update_By_Id();
+            removeById = new Command_Remove_By_Id();
+            addIfMax = new Command_Add_If_Max();
+            executeScript = new Command_Execute_Script(client.getCommandHandler());
+        }
+
+        void login(String login) throws IOException, InterruptedException {
+            User user = client.getUser();
+            user.setLogin(login);
+            user.setPassword(password);
+            ServerPacket answer;
+            try {
+                answer = client.request(new Command_Login().executeOnClient(false, user, null))
+                        .get(ANSWER_TIMEOUT, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException ex) {
+                throw new IOException(login + " can not log in: " + ex.getMessage());
+            }
+            if (!answer.getIsSuccessful()) {
+                throw new IOException(login + " can not log in: " + answer.getMessage());
+            }
+            user.setToken((String) answer.getObject());
+            client.setAuthorized(true);
+        }
+
+        /**
+         * Sends the command.
+         * @return the future completed when all answers have come
+         */
+
+        CompletableFuture<?> send(Operation operation) {
+            User user = client.getUser();
+            switch (operation) {
+                case SHOW:
+                    return client.request(new Packet(show, user, null));
+                case ADD:
+                    return client.request(new Packet(add, user, product()));
+                case UPDATE_ID:
+                    Product product = product();
+                    product.setId(ownedId(false));
+                    return client.request(new Packet(updateId, user, product));
+                case REMOVE_BY_ID:
+                    return client.request(new Packet(removeById, user, ownedId(true)));
+                case ADD_IF_MAX:
+                    return client.request(new Packet(addIfMax, user, product()));
+                default:
+                    ArrayList<Packet> packets = executeScript.execute(true, user, script);
+                    if (packets == null) {
+                        CompletableFuture<?> failed = new CompletableFuture<>();
+                        failed.completeExceptionally(new IOException("Script was not read."));
+                        return failed;
+                    }
+                    CompletableFuture<?>[] answers = new CompletableFuture<?>[packets.size()];
+                    for (int i = 0; i < answers.length; i++) {
+                        answers[i] = client.request(packets.get(i));
+                    }
+                    return CompletableFuture.allOf(answers);
+            }
+        }
+
+        private Product product() {
+            Product product = SampleData.product(random, users);
+            product.setHost(client.getUser().getLogin());
+            return product;
+        }
+
+        /**
+         * Returns the id of a product of user, or any id if the user has none, then the server refuses the change.
+         * @param remove - whether the id is taken from the products of user
+         */
+
+        private int ownedId(boolean remove) {
+            if (owned.isEmpty()) {
+                return 1 + random.nextInt(Math.max(1, products));
+            }
+            return remove ? owned.remove(owned.size() - 1) : owned.get(random.nextInt(owned.size()));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package src.benchmark;
+
+import src.elements.Coordinates;
+import src.elements.Location;
+import src.elements.Person;
+import src.elements.Product;
+
+import javax.xml.bind.ValidationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Class of sample data for benchmarks.
+ * Generates valid products with a fixed seed, so runs are comparable.
+ */
+
+public class SampleData {
+
+    private static final String[] UNITS = {"PCS", "MILLILITERS", "GRAMS"};
+    private static final String[] COLORS = {"RED", "BLUE", "ORANGE", "WHITE", "BROWN"};
+
+    private SampleData() {}
+
+    public static ArrayList<Product> products(int count, int users) {
+        Random random = new Random(42);
+        ArrayList<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = product(random, users);
+            product.setId(i + 1);
+            products.add(product);
+        }
+        return products;
+    }
+
+    public static Product product(Random random, int users) {
+        try {
+            Product product = new Product("product" + random.nextInt(1000),
+                    new Coordinates(random.nextFloat() * 400, random.nextDouble() * 400),
+                    LocalDate.now().minusDays(random.nextInt(365)),
+                    1L + random.nextInt(1_000_000),
+                    "part" + random.nextInt(50),
+                    UNITS[random.nextInt(UNITS.length)],
+                    new Person("owner" + random.nextInt(100), 1 + random.nextInt(220), COLORS[random.nextInt(COLORS.length)],
+                            new Location((long) random.nextInt(1000), (long) random.nextInt(1000), random.nextInt(1000), "location" + random.nextInt(20))));
+            product.setHost("user" + random.nextInt(users));
+            product.setColor(new java.awt.Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            return product;
+        } catch (ValidationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
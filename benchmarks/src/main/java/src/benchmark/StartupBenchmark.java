@@ -0,0 +1,51 @@
+package src.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.logic.CollectionManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of start of server: the collection and its indexes are built from the pages of products.
+ * Products are kept in memory by InMemoryDBManager, so the time of database is not measured.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int USERS = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private InMemoryDBManager dbManager;
+
+    @Setup
+    public void setup() {
+        dbManager = new InMemoryDBManager(SampleData.products(size, USERS));
+    }
+
+    /**
+     * Loads the whole collection.
+     */
+
+    @Benchmark
+    public CollectionManager load() {
+        return new CollectionManager(dbManager);
+    }
+}
@@ -2,13 +2,23 @@ package src.client;
 
 import src.client.Client;
 import src.client.gui.*;
+import src.commands.Command_Login;
 import src.elements.Product;
+import src.logic.ChangeEvent;
+import src.logic.Chunk;
+import src.logic.Packet;
+import src.logic.Page;
 import src.logic.ServerPacket;
 
 import javax.swing.*;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.MissingResourceException;
 
+/**
+ * Class of listener of answers.
+ * Runs the listening loop of client and shows the answers: messages as dialogs, collections in the workspace.
+ */
+
 public class AnswerListener extends Thread {
 
     private CollectionTableModel collectionTableModel;
@@ -16,56 +26,91 @@ public class AnswerListener extends Thread {
     private Localizer localizer;
     private Workspace workspace;
     private AuthorizationWindow authorizationWindow;
-    private final int BUFFER_SIZE = 4096;
 
     AnswerListener(Client client, Localizer localizer, AuthorizationWindow authorizationWindow) {
         this.authorizationWindow = authorizationWindow;
         this.client = client;
         this.localizer = localizer;
+
+        client.addListener(ServerPacket.Kind.MESSAGE, this::acceptMessage);
+        client.addListener(ServerPacket.Kind.SNAPSHOT, this::acceptCollection);
+        client.addListener(ServerPacket.Kind.DELTA, this::acceptCollection);
+        client.addListener(ServerPacket.Kind.PAGE, this::acceptCollection);
+        client.addListener(ServerPacket.Kind.CHUNK, this::acceptCollection);
+        client.addReconnectListener(this::restoreSession);
     }
 
     @Override
     public void run() {
+        client.listen();
+    }
 
-        while (true) {
-                ServerPacket serverPacket = client.acceptAnswer();
-                if (serverPacket != null) {
-
-                    if (!client.getAuthorized() && serverPacket.getIsMessage() && serverPacket.getIsSuccessful()) {
-                        if (serverPacket.getMessage().equals("Authorization is successful!")) {
-                            client.setAuthorized(true);
-                            authorizationWindow.dispose();
-                            workspace = new Workspace(client, localizer);
-                            collectionTableModel = workspace.getCollectionTableModel();
-                        }
+    private void acceptMessage(ServerPacket serverPacket) {
+        if (!client.getAuthorized() && serverPacket.getIsSuccessful()) {
+            if (serverPacket.getMessage().equals("Authorization is successful!")) {
+                client.getUser().setToken((String) serverPacket.getObject());
+                client.setAuthorized(true);
+                authorizationWindow.dispose();
+                workspace = new Workspace(client, localizer);
+                collectionTableModel = workspace.getCollectionTableModel();
+            }
 
-                        try {
-                            JOptionPane.showMessageDialog(null, localizer.getBundle().getObject(serverPacket.getMessage()));
-                        } catch (MissingResourceException ex) {
-                            JOptionPane.showMessageDialog(null, serverPacket.getMessage());
-                        }
+            try {
+                JOptionPane.showMessageDialog(null, localizer.getBundle().getObject(serverPacket.getMessage()));
+            } catch (MissingResourceException ex) {
+                JOptionPane.showMessageDialog(null, serverPacket.getMessage());
+            }
+        } else if (client.getAuthorized()) {
+            try {
+                JDialog dialog = new MessageWindow(null, (String) localizer.getBundle().getObject(serverPacket.getMessage()));
+                dialog.setVisible(true);
+            } catch (MissingResourceException ex) {
+                JDialog dialog = new MessageWindow(null, serverPacket.getMessage());
+                dialog.setVisible(true);
+            }
+        }
+    }
 
-                    } else {
+    @SuppressWarnings("unchecked")
+    private void acceptCollection(ServerPacket serverPacket) {
+        if (!client.getAuthorized() || serverPacket.getIsMessage()) {
+            return;
+        }
+        if (serverPacket.getKind() == ServerPacket.Kind.PAGE) {
+            collectionTableModel.showPage((Page) serverPacket.getObject());
+        } else if (!collectionTableModel.isBlocked()) {
+            if (serverPacket.getKind() == ServerPacket.Kind.DELTA) {
+                if (!collectionTableModel.applyChanges((List<ChangeEvent>) serverPacket.getObject())) {
+                    collectionTableModel.requestCollection();
+                }
+            } else if (serverPacket.getKind() == ServerPacket.Kind.CHUNK) {
+                if (!collectionTableModel.appendChunk((Chunk) serverPacket.getObject(), serverPacket.getVersion())) {
+                    collectionTableModel.requestCollection();
+                }
+            } else {
+                collectionTableModel.updateAll((List<Product>) serverPacket.getObject(), serverPacket.getVersion());
+            }
+        }
+        workspace.repaint();
+        workspace.getVisualisationPanel().updateShapesToDraw(workspace.isVisualizationTabOpened());
+    }
 
-                        if (client.getAuthorized() & !serverPacket.getIsMessage()) {
-                            if (!collectionTableModel.isBlocked()) {
-                                collectionTableModel.updateAll((ArrayList<Product>) serverPacket.getObject());
-                            }
-                            workspace.repaint();
-                            workspace.getVisualisationPanel().updateShapesToDraw(workspace.isVisualizationTabOpened());
-                        }
+    /**
+     * Logs in again after the client has connected again, the server may have lost the session.
+     * The password of user is already hashed, so the packet is made here instead of Command_Login.executeOnClient.
+     */
 
-                        if (client.getAuthorized() & serverPacket.getIsMessage()) {
-                            try {
-                                JDialog dialog = new MessageWindow(null, (String) localizer.getBundle().getObject(serverPacket.getMessage()));
-                                dialog.setVisible(true);
-                            } catch (MissingResourceException ex) {
-                                JDialog dialog = new MessageWindow(null, serverPacket.getMessage());
-                                dialog.setVisible(true);
-                            }
-                        }
-                    }
-                }
+    private void restoreSession() {
+        if (!client.getAuthorized()) {
+            return;
         }
+        client.request(new Packet(new Command_Login(), client.getUser(), null)).whenComplete((answer, ex) -> {
+            if (answer != null && answer.getIsSuccessful()) {
+                client.getUser().setToken((String) answer.getObject());
+                collectionTableModel.requestCollection();
+            } else {
+                JOptionPane.showMessageDialog(null, "Connection with server was restored, but the session was not.");
+            }
+        });
     }
 }
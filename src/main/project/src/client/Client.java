@@ -7,7 +7,10 @@ import src.client.gui.AuthorizationWindow;
 import src.client.gui.Localizer;
 import src.database.User;
 import src.exceptions.InvalidCommand;
+import src.logic.Codec;
+import src.logic.Compression;
 import src.logic.CommandHandler;
+import src.logic.FrameDecoder;
 import src.commands.*;
 import src.logic.Packet;
 import src.logic.SerializationManager;
@@ -16,13 +19,33 @@ import src.logic.ServerPacket;
 import javax.swing.*;
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Class of client.
+ * Sends requests from any thread and reads answers on one listening thread, which blocks until a frame comes
+ * and passes it to the listeners of its kind. When the server goes away, the client connects again
+ * with growing pauses and tells the reconnect listeners.
+ */
 
 public class Client implements Runnable {
 
     public static Client client;
 
+    private static final long MIN_BACKOFF = 250;
+    private static final long MAX_BACKOFF = 10000;
+
     private CommandHandler commandHandler;
+    private Socket socket;
     private DataInputStream ois;
     private DataOutputStream oos;
 
@@ -30,10 +53,17 @@ public class Client implements Runnable {
     private final int port;
 
     private final int BUFFER_SIZE = 4096;
+    private byte[] buffer;
+    private Codec codec;
+    private boolean compression;
     private Boolean authorized;
+    private final AtomicLong requestIds;
+    private final ConcurrentHashMap<Long, CompletableFuture<ServerPacket>> pending;
+    private final EnumMap<ServerPacket.Kind, List<Consumer<ServerPacket>>> listeners;
+    private final List<Runnable> reconnectListeners;
 
     private static final Logger logger = LoggerFactory.getLogger(Client.class);
-    private static User user;
+    private User user;
 
     public Client(String host, int port) {
         this.host = host;
@@ -43,6 +73,16 @@ public class Client implements Runnable {
         oos = null;
 
         authorized = false;
+        buffer = new byte[BUFFER_SIZE];
+        codec = SerializationManager.forName(System.getProperty("client.codec", "binary"));
+        compression = Boolean.parseBoolean(System.getProperty("client.compression", "true"));
+        requestIds = new AtomicLong();
+        pending = new ConcurrentHashMap<>();
+        listeners = new EnumMap<>(ServerPacket.Kind.class);
+        for (ServerPacket.Kind kind : ServerPacket.Kind.values()) {
+            listeners.put(kind, new CopyOnWriteArrayList<>());
+        }
+        reconnectListeners = new CopyOnWriteArrayList<>();
 
         commandHandler = new CommandHandler();
         user = new User();
@@ -50,21 +90,124 @@ public class Client implements Runnable {
 
     @Override
     public void run() {
+        registerCommands();
         try {
-            Socket socket = new Socket(host, port);
-            BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-            oos = new DataOutputStream(socket.getOutputStream());
-            ois = new DataInputStream(socket.getInputStream());
+            connect();
+        } catch (IOException ex) {
+            System.out.println("Server is not working. Try to connect later.");
+            logger.info("Unable to connect to server.");
+        }
+    }
+
+    synchronized private void connect() throws IOException {
+        socket = new Socket(host, port);
+        oos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        ois = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        write(SerializationManager.handshake(codec, compression));
+
+        logger.info("Client connected to socket");
+        logger.info("Client writing channel = oos & reading channel = ois initialized.");
+    }
+
+    /**
+     * Registers the listener of answers of the kind. Answers to requests sent by request go to their futures instead.
+     * @param kind - the kind of answers
+     * @param listener - the listener, called on the listening thread
+     */
+
+    public void addListener(ServerPacket.Kind kind, Consumer<ServerPacket> listener) {
+        listeners.get(kind).add(listener);
+    }
 
-            logger.info("Client connected to socket");
-            logger.info("Client writing channel = oos & reading channel = ois initialized.");
+    /**
+     * Registers the action run on the listening thread after the client has connected again.
+     * @param listener - the action, usually restoring the session
+     */
+
+    public void addReconnectListener(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    /**
+     * Reads answers and passes them to listeners until the thread is interrupted. Connects again if the connection is lost.
+     */
+
+    public void listen() {
+        if (ois == null && !reconnect()) {
+            return;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                dispatch(acceptAnswer());
+            } catch (IOException ex) {
+                logger.info("Client lost connection with server.");
+                if (!reconnect()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(ServerPacket packet) {
+        CompletableFuture<ServerPacket> request = pending.remove(packet.getRequestId());
+        if (request != null) {
+            request.complete(packet);
+            return;
+        }
+        for (Consumer<ServerPacket> listener : listeners.get(packet.getKind())) {
+            listener.accept(packet);
+        }
+    }
 
-            registerCommands();
+    /**
+     * Connects again with pauses growing from MIN_BACKOFF to MAX_BACKOFF. Requests waiting for answers fail.
+     * @return false if the thread was interrupted before it has connected
+     */
+
+    private boolean reconnect() {
+        closeQuietly();
+        IOException lost = new IOException("Connection with server is lost.");
+        for (Long id : pending.keySet()) {
+            CompletableFuture<ServerPacket> request = pending.remove(id);
+            if (request != null) {
+                request.completeExceptionally(lost);
+            }
+        }
+        long backoff = MIN_BACKOFF;
+        while (true) {
+            try {
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                connect();
+                break;
+            } catch (IOException ex) {
+                closeQuietly();
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                logger.info("Unable to connect to server, next try in " + backoff + " ms.");
+            }
+        }
+        for (Runnable listener : reconnectListeners) {
+            listener.run();
+        }
+        return true;
+    }
 
+    synchronized private void closeQuietly() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
         } catch (IOException ex) {
-            System.out.println("Server is not working. Try to connect later.");
-            logger.info("Unable to connect to server.");
+            logger.info(ex.getMessage());
         }
+        socket = null;
+        ois = null;
+        oos = null;
     }
 
     public void close(Socket socket, DataInputStream ois, DataOutputStream oos) {
@@ -114,17 +257,39 @@ public class Client implements Runnable {
         return false;
     }
 
+    /**
+     * Sends the request without waiting for the answer, so several requests can be on the way at once.
+     * @param packet - the request
+     * @return the future completed with the answer to this request
+     */
+
+    public CompletableFuture<ServerPacket> request(Packet packet) {
+        CompletableFuture<ServerPacket> answer = new CompletableFuture<>();
+        if (packet == null) {
+            answer.complete(null);
+            return answer;
+        }
+        if (packet.getRequestId() == 0) {
+            packet.setRequestId(requestIds.incrementAndGet());
+        }
+        pending.put(packet.getRequestId(), answer);
+        if (sendRequest(packet)) {
+            pending.remove(packet.getRequestId());
+            answer.completeExceptionally(new IOException("Connection with server is lost."));
+        }
+        return answer;
+    }
+
     public boolean sendRequest(Packet packet) {
         try {
 
             if (packet != null) {
 
-                byte[] message = SerializationManager.serializeObject(packet);
-                oos.write(message);
-                oos.flush();
-                logger.info("Client sent message to server.");
-
-                logger.info("Client sent message & start waiting for data from server...");
+                if (packet.getRequestId() == 0) {
+                    packet.setRequestId(requestIds.incrementAndGet());
+                }
+                write(codec.encode(packet));
+                logger.debug("Client sent request {}.", packet.getRequestId());
             }
         } catch (IOException ex) {
             logger.info("Client lost connection with server. Stopping work.");
@@ -134,20 +299,36 @@ public class Client implements Runnable {
         return false;
     }
 
-    public ServerPacket acceptAnswer() {
-        try {
-
-            while (ois.available() <= 0) { }
+    synchronized private void write(ByteBuffer frame) throws IOException {
+        if (oos == null) {
+            throw new IOException("Client is not connected.");
+        }
+        oos.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        oos.flush();
+    }
 
-            logger.info("Trying to read data...");
-            byte[] bytes = new byte[BUFFER_SIZE];
-            ois.read(bytes);
-            return SerializationManager.deserializeObject(bytes);
+    /**
+     * Reads the next answer, blocking until it comes.
+     * @throws IOException if the connection is lost or the answer is broken
+     */
 
-        } catch (IOException ex) {
-            logger.info("Some problems with accepting the answer.");
-            return null;
+    private ServerPacket acceptAnswer() throws IOException {
+        DataInputStream ois = this.ois;
+        if (ois == null) {
+            throw new IOException("Client is not connected.");
+        }
+        int length = ois.readInt();
+        boolean compressed = (length & Compression.COMPRESSED) != 0;
+        length &= ~Compression.COMPRESSED;
+        if (length > FrameDecoder.MAX_FRAME_SIZE) {
+            throw new IOException("Frame of " + length + " bytes can not be accepted.");
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
         }
+        ois.readFully(buffer, 0, length);
+        return compressed ? Compression.decode(codec, ByteBuffer.wrap(buffer, 0, length))
+                : codec.decodeServerPacket(ByteBuffer.wrap(buffer, 0, length));
     }
 
     private String[] createArgs(@NotNull String input) {
@@ -175,6 +356,7 @@ public class Client implements Runnable {
         commandHandler.register("filter_by_unit_of_measure", new Command_Filter_By_Unit_Of_Measure());
         commandHandler.register("print_unique_part_number", new Command_Print_Unique_Part_Number());
         commandHandler.register("print_field_descending_owner", new Command_Print_Field_Descending_Owner());
+        commandHandler.register("query", new Command_Query());
     }
 
     public Boolean getAuthorized() {
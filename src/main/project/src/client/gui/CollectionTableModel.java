@@ -1,9 +1,16 @@
 package src.client.gui;
 
 import src.client.Client;
+import src.commands.Command_Query;
 import src.commands.Command_Remove_By_Id;
+import src.commands.Command_Show;
 import src.commands.Command_Update_By_Id;
 import src.elements.Product;
+import src.exceptions.BadValue;
+import src.logic.ChangeEvent;
+import src.logic.Chunk;
+import src.logic.Page;
+import src.logic.Query;
 
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
@@ -13,24 +20,31 @@ import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
 
 public class CollectionTableModel extends DefaultTableModel {
 
     private final int COLUMNS_AMOUNT = 16;
+    private static final int CHUNK_SIZE = Integer.getInteger("client.chunkSize", 500);
     private static ArrayList<Product> data;
     private Client client;
     private Localizer localizer;
     private boolean blocked;
+    private long version;
+    private Query query;
+    private boolean streaming;
+    private int nextChunk;
+    private long streamVersion;
+    private ArrayList<ChangeEvent> pendingChanges;
 
     public CollectionTableModel(Client client, Localizer localizer) {
           data = new ArrayList<>();
           this.client = client;
           this.localizer = localizer;
           blocked = false;
+          query = new Query().setLimit(Query.MAX_LIMIT);
+          pendingChanges = new ArrayList<>();
          // for (int i = 0; i < data.size(); i++) {
            //   data.add(new String[getColumnCount()]);
           //}
@@ -190,262 +204,53 @@ public class CollectionTableModel extends DefaultTableModel {
        return -1;
     }
 
+    /**
+     * Asks the server for the products with the same value in the column as the selected cell has.
+     * Filters are added to the current query, the table is not updated by changes until unblock.
+     */
+
     void filterBySelectedCell(int columnIndex, int rowIndex) {
         try {
-            switch (columnIndex) {
-                case 1:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getName().equals(Product.getName()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 2:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getCoordinates().getX().equals(Product.getCoordinates().getX()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 3:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getCoordinates().getY().equals(Product.getCoordinates().getY()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 4:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getCreationDate().equals(Product.getCreationDate()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-
-                case 5:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getPrice().equals(Product.getPrice()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 6:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getPartNumber().equals(Product.getPartNumber()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 7:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getUnitOfMeasure().equals(Product.getUnitOfMeasure()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 8:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getName().equals(Product.getOwner().getName()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 9:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getHeight().equals(Product.getOwner().getHeight()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 11:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getLocation().getName().equals(Product.getOwner().getLocation().getName()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 12:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getLocation().getX().equals(Product.getOwner().getLocation().getX()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 13:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getLocation().getY().equals(Product.getOwner().getLocation().getY()))
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 14:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getOwner().getLocation().getZ() == Product.getOwner().getLocation().getZ())
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    break;
-
-                case 15:
-                    data = data.stream()
-                            .filter(Product -> data.get(rowIndex).getHost().equals(Product.getHost()))
-                            .collect(Collectors.toCollection(ArrayList::new));
+            Query.Field field = Query.Field.values()[columnIndex];
+            Object value;
+            synchronized (this) {
+                value = field.of(data.get(rowIndex));
             }
+            query.equal(field, value);
             blocked = true;
+            sendQuery();
         } catch (IndexOutOfBoundsException ex) {
             System.out.println("The element in table not found");
+        } catch (BadValue ex) {
+            System.out.println(ex.getMessage());
         }
     }
 
+    /**
+     * Asks the server for the products of the current query sorted by the column.
+     * @param mode - 1 for the reverse order
+     */
+
     void sortByColumn(int columnIndex, int mode) {
+        if (columnIndex < 0 || columnIndex >= COLUMNS_AMOUNT) {
+            return;
+        }
         blocked = true;
-        switch (columnIndex) {
-            case 0:
-                Collections.sort(data);
-                break;
-
-            case 1:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getName().compareTo(p2.getName());
-                    }
-                });
-                break;
-
-            case 2:
-                Collections.sort(data, new Comparator<Product>() {
-                public int compare(Product p1, Product p2) {
-                    if (p1.getCoordinates().getX() > p2.getCoordinates().getX()) {
-                        return 1;
-                    } else if (p1.getCoordinates().getX().equals(p2.getCoordinates().getX())) {
-                        return 0;
-                    }
-                    return -1;
-                }
-            });
-                break;
-
-            case 3:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getCoordinates().getY() > p2.getCoordinates().getY()) {
-                            return 1;
-                        } else if (p1.getCoordinates().getY().equals(p2.getCoordinates().getY())) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
-
-            case 4:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getCreationDate().compareTo(p2.getCreationDate());
-                    }
-                });
-                break;
-
-            case 5:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getPrice() > p2.getPrice()) {
-                            return 1;
-                        } else if (p1.getPrice().equals(p2.getPrice())) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
-
-            case 6:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getPartNumber().compareTo(p2.getPartNumber());
-                    }
-                });
-                break;
-
-            case 7:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getUnitOfMeasure().compareTo(p2.getUnitOfMeasure());
-                    }
-                });
-                break;
-
-            case 8:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getOwner().getName().compareTo(p2.getOwner().getName());
-                    }
-                });
-                break;
-
-            case 9:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getOwner().getHeight() > p2.getOwner().getHeight()) {
-                            return 1;
-                        } else if (p1.getOwner().getHeight().equals(p2.getOwner().getHeight())) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
+        query.setSort(Query.Field.values()[columnIndex], mode == 1);
+        sendQuery();
+    }
 
-            case 10:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getOwner().getEyeColor().compareTo(p2.getOwner().getEyeColor());
-                    }
-                });
-                break;
+    private void sendQuery() {
+        client.sendRequest(new Command_Query().executeOnClient(client.getAuthorized(), client.getUser(), query));
+    }
 
-            case 11:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getOwner().getLocation().getName().compareTo(p2.getOwner().getLocation().getName());
-                    }
-                });
-                break;
-
-            case 12:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getOwner().getLocation().getX() > p2.getOwner().getLocation().getX()) {
-                            return 1;
-                        } else if (p1.getOwner().getLocation().getX().equals(p2.getOwner().getLocation().getX())) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
-
-            case 13:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getOwner().getLocation().getY() > p2.getOwner().getLocation().getY()) {
-                            return 1;
-                        } else if (p1.getOwner().getLocation().getY().equals(p2.getOwner().getLocation().getY())) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
-
-            case 14:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        if (p1.getOwner().getLocation().getZ() > p2.getOwner().getLocation().getZ()) {
-                            return 1;
-                        } else if (p1.getOwner().getLocation().getZ() == p2.getOwner().getLocation().getZ()) {
-                            return 0;
-                        }
-                        return -1;
-                    }
-                });
-                break;
+    /**
+     * Shows the page of query result instead of the collection.
+     * @param page - the page
+     */
 
-            case 15:
-                Collections.sort(data, new Comparator<Product>() {
-                    public int compare(Product p1, Product p2) {
-                        return p1.getHost().compareTo(p2.getHost());
-                    }
-                });
-                break;
-        }
-        if (mode == 1) {
-            data.sort(Comparator.reverseOrder());
-        }
+    synchronized public void showPage(Page page) {
+        data = new ArrayList<>(page.getProducts());
     }
 
     void addDate(Product product) {
@@ -459,15 +264,119 @@ public class CollectionTableModel extends DefaultTableModel {
         }
     }
 
-    public void updateAll(ArrayList<Product> products) {
-        data = products;
+    synchronized public void updateAll(List<Product> products, long version) {
+        data = products == null ? new ArrayList<>() : new ArrayList<>(products);
+        this.version = version;
+        finishStream();
+    }
+
+    /**
+     * Adds the rows of the next chunk of streamed collection. The first chunk replaces the table.
+     * Changes which come during the stream are kept and applied after the last chunk.
+     * @param chunk - the chunk
+     * @param version - the version of streamed collection
+     * @return false if a chunk was missed and the collection must be requested again
+     */
+
+    synchronized public boolean appendChunk(Chunk chunk, long version) {
+        if (chunk.getSequence() == 0) {
+            data = new ArrayList<>();
+            streaming = true;
+            streamVersion = version;
+            nextChunk = 0;
+        }
+        if (!streaming || chunk.getSequence() != nextChunk || version != streamVersion) {
+            streaming = false;
+            pendingChanges.clear();
+            return false;
+        }
+        data.addAll(chunk.getProducts());
+        nextChunk++;
+        if (chunk.isLast()) {
+            this.version = streamVersion;
+            return finishStream();
+        }
+        return true;
+    }
+
+    private boolean finishStream() {
+        streaming = false;
+        ArrayList<ChangeEvent> changes = pendingChanges;
+        pendingChanges = new ArrayList<>();
+        return applyChanges(changes);
+    }
+
+    /**
+     * Applies changes of collection which the client has not seen yet.
+     * @param changes - the changes in order of versions
+     * @return false if some changes were missed and the whole collection must be requested
+     */
+
+    synchronized public boolean applyChanges(List<ChangeEvent> changes) {
+        if (streaming) {
+            pendingChanges.addAll(changes);
+            return true;
+        }
+        for (ChangeEvent change : changes) {
+            if (change.getVersion() <= version) {
+                continue;
+            }
+            if (change.getVersion() != version + 1) {
+                return false;
+            }
+            int index = indexOf(change.getProductId());
+            switch (change.getType()) {
+                case ADD:
+                    if (index == -1) {
+                        data.add(change.getProduct());
+                    }
+                    break;
+                case UPDATE:
+                    if (index != -1) {
+                        data.set(index, change.getProduct());
+                    } else {
+                        data.add(change.getProduct());
+                    }
+                    break;
+                case REMOVE:
+                    if (index != -1) {
+                        data.remove(index);
+                    }
+                    break;
+            }
+            version = change.getVersion();
+        }
+        return true;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < data.size(); i++) {
+            if (data.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public boolean isBlocked() {
         return blocked;
     }
 
+    /**
+     * Drops the query, the collection must be asked again.
+     */
+
     public void unblock() {
         blocked = false;
+        query = new Query().setLimit(Query.MAX_LIMIT);
+    }
+
+    /**
+     * Asks the server for the whole collection, by chunks unless client.chunkSize is 0.
+     */
+
+    public void requestCollection() {
+        Integer chunkSize = CHUNK_SIZE > 0 ? CHUNK_SIZE : null;
+        client.sendRequest(new Command_Show().executeOnClient(client.getAuthorized(), client.getUser(), chunkSize));
     }
 }
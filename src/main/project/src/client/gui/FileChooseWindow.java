@@ -74,11 +74,6 @@ public class FileChooseWindow extends JFrame {
                 if (packets != null) {
                     for (Packet p : packets) {
                         client.sendRequest(p);
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException ex) {
-                            System.out.println(ex.getMessage());
-                        }
                     }
                 }
                 dispose();
@@ -90,8 +90,7 @@ public class Workspace extends JFrame {
 
         nameLabel.setText(client.getUser().getLogin());
 
-        Command_Show command_show = new Command_Show();
-        client.sendRequest(command_show.executeOnClient(client.getAuthorized(), client.getUser(), null));
+        collectionTableModel.requestCollection();
 
         visualisationPanel = new VisualisationPanel(collectionTableModel);
         tabbedPane.add("Visualisation", visualisationPanel);
@@ -148,7 +147,7 @@ public class Workspace extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 collectionTableModel.unblock();
-                client.sendRequest(new Command_Show().executeOnClient(client.getAuthorized(), client.getUser(), null));
+                collectionTableModel.requestCollection();
             }
         });
 
@@ -15,6 +15,16 @@ public abstract class Command {
 
     public abstract boolean validateArgs(String ... args);
     public abstract ServerPacket executeOnServer(Server server, User user, Object object);
+
+    /**
+     * Tells whether the command only reads the collection.
+     * Read-only commands of one client can run at the same time, other commands run in order of arrival.
+     */
+
+    public boolean isReadOnly() {
+        return false;
+    }
+
     public Packet executeOnClient(boolean authorized, User user, Object args) {
         if (authorized) {
             Packet packet = new Packet();
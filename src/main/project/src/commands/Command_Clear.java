@@ -33,8 +33,8 @@ public class Command_Clear extends Command implements Serializable {
      */
 
     @Override
-    synchronized public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+    public ServerPacket executeOnServer(Server server, User user, Object object) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().clear(user), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
@@ -28,8 +28,8 @@ import java.util.Comparator;
 
 public class Command_Execute_Script extends Command implements Serializable {
     private CommandHandler handler;
-    private static ArrayList<String> calls;
-    private static ArrayList<Packet> packets;
+    private transient ArrayList<String> calls;
+    private transient ArrayList<Packet> packets;
 
     /**
      * Constructor
@@ -54,7 +54,7 @@ public class Command_Execute_Script extends Command implements Serializable {
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().executeScript(), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!\n", false, true);
@@ -64,6 +64,9 @@ public class Command_Execute_Script extends Command implements Serializable {
 
         if (authorized) {
 
+            if (calls.isEmpty()) {
+                packets = new ArrayList<>();
+            }
             packets.add(this.executeOnClient(true, user, path));
 
             boolean exit = false;
@@ -80,65 +83,69 @@ public class Command_Execute_Script extends Command implements Serializable {
                     return null;
                 } else {
                     Input input = new Input(path);
+                    calls.add(path);
+
+                    try {
+                        while (input.hasNextLine()) {
+                            String nextLine = input.readLine();
+                            if (!nextLine.equals("")) {
+
+                                try {
+                                    Command command = handler.pickCommand(nextLine);
+                                    if (nextLine.contains("execute_script")) {
+                                        Command_Execute_Script com = (Command_Execute_Script) command;
+                                         String[] args = nextLine.split(" ");
+                                         ArrayList<Packet> answer = com.execute(true, user, args[1]);
+                                    } else {
+                                        if (nextLine.contains("add")) {
+                                            if (nextLine.split(" ").length == 2) {
+                                                String[] args = new String[13];
+                                                args[0] = nextLine.split(" ")[1];
+
+                                                for (int i = 1; i < 13; i++) {
+                                                    if (input.hasNextLine()) {
+                                                        nextLine = input.readLine();
+                                                        args[i] = nextLine;
+                                                    } else {
+                                                        break;
+                                                    }
+                                                }
 
-                    while (input.hasNextLine()) {
-                        String nextLine = input.readLine();
-                        if (!nextLine.equals("")) {
-
-                            calls.add(path);
-                            try {
-                                Command command = handler.pickCommand(nextLine);
-                                if (nextLine.contains("execute_script")) {
-                                    Command_Execute_Script com = (Command_Execute_Script) command;
-                                     String[] args = nextLine.split(" ");
-                                     ArrayList<Packet> answer = com.execute(true, user, args[1]);
-                                } else {
-                                    if (nextLine.contains("add")) {
-                                        if (nextLine.split(" ").length == 2) {
-                                            String[] args = new String[13];
-                                            args[0] = nextLine.split(" ")[1];
-
-                                            for (int i = 1; i < 13; i++) {
-                                                if (input.hasNextLine()) {
-                                                    nextLine = input.readLine();
-                                                    args[i] = nextLine;
-                                                } else {
-                                                    break;
+                                                try {
+                                                    Product product = new Product(args[0],
+                                                            new Coordinates(
+                                                                    Float.parseFloat(args[1]),
+                                                                    Double.parseDouble(args[2])),
+                                                            LocalDate.now(), Long.parseLong(args[3]),
+                                                            args[4],
+                                                            args[5],
+                                                            new Person(
+                                                                    args[6],
+                                                                    Integer.parseInt(args[7]),
+                                                                    args[8],
+                                                                    new Location(
+                                                                            Long.parseLong(args[9]),
+                                                                            Long.parseLong(args[10]),
+                                                                            Integer.parseInt(args[11]),
+                                                                            args[12])));
+                                                    product.setHost(user.getLogin());
+                                                    packets.add(command.executeOnClient(true, user, product));
+                                                } catch (ValidationException ex) {
+                                                    System.out.println(ex.getMessage());
                                                 }
-                                            }
 
-                                            try {
-                                                Product product = new Product(args[0],
-                                                        new Coordinates(
-                                                                Float.parseFloat(args[1]),
-                                                                Double.parseDouble(args[2])),
-                                                        LocalDate.now(), Long.parseLong(args[3]),
-                                                        args[4],
-                                                        args[5],
-                                                        new Person(
-                                                                args[6],
-                                                                Integer.parseInt(args[7]),
-                                                                args[8],
-                                                                new Location(
-                                                                        Long.parseLong(args[9]),
-                                                                        Long.parseLong(args[10]),
-                                                                        Integer.parseInt(args[11]),
-                                                                        args[12])));
-                                                product.setHost(user.getLogin());
-                                                packets.add(command.executeOnClient(true, user, product));
-                                            } catch (ValidationException ex) {
-                                                System.out.println(ex.getMessage());
                                             }
-
+                                        } else {
+                                            packets.add(command.executeOnClient(true, user, nextLine));
                                         }
-                                    } else {
-                                        packets.add(command.executeOnClient(true, user, nextLine));
                                     }
+                                } catch (InvalidCommand ex) {
+                                    System.out.println(ex.getMessage());
                                 }
-                            } catch (InvalidCommand ex) {
-                                System.out.println(ex.getMessage());
                             }
                         }
+                    } finally {
+                        calls.remove(calls.size() - 1);
                     }
 
                     input.closeFile();
@@ -35,7 +35,7 @@ public class Command_Filter_By_Unit_Of_Measure extends Command implements Serial
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().filterByUnitOfMeasure(object), true, true);
         }
         return new ServerPacket(null,"You don't have rights to interact with collection!", false, true);
@@ -49,4 +49,9 @@ public class Command_Filter_By_Unit_Of_Measure extends Command implements Serial
         System.out.println("You must be logged in to continue working.");
         return null;
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
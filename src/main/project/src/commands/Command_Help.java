@@ -1,7 +1,5 @@
 package src.commands;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import src.client.Client;
 import src.database.User;
 import src.exceptions.BadNumberOfArgsException;
@@ -22,8 +20,6 @@ public class Command_Help extends Command implements Serializable {
      * Constructor
      */
 
-    private static final Logger logger = LoggerFactory.getLogger(Server.class);
-
     public Command_Help() { }
 
     @Override
@@ -38,10 +34,14 @@ public class Command_Help extends Command implements Serializable {
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        logger.info("executeCommand");
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().help(), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -34,9 +34,14 @@ public class Command_Info extends Command implements Serializable {
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().info(), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -26,7 +26,7 @@ public class Command_Login extends Command implements Serializable {
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
         if (server.checkUser(user.getLogin(), user.getPassword())) {
-            return new ServerPacket(null, "Authorization is successful!", true, true);
+            return new ServerPacket(server.openSession(user.getLogin()), "Authorization is successful!", true, true);
         } else {
             return new ServerPacket(null, "The user with this login and password does not exist", false, true);
         }
@@ -31,9 +31,14 @@ public class Command_Print_Field_Descending_Owner extends Command implements Ser
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().printFieldDescendingOwner(), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
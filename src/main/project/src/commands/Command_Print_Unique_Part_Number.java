@@ -33,9 +33,14 @@ public class Command_Print_Unique_Part_Number extends Command implements Seriali
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().printUniquePartNumber(), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -0,0 +1,70 @@
+package src.commands;
+
+import src.database.User;
+import src.exceptions.BadValue;
+import src.logic.Packet;
+import src.logic.Query;
+import src.logic.ServerPacket;
+import src.server.Server;
+
+import java.io.Serializable;
+
+/**
+ * Class of command Query.
+ * This command finds the products matching conditions and returns one page of them in the asked order.
+ */
+
+public class Command_Query extends Command implements Serializable {
+
+    /**
+     * Constructor
+     */
+
+    public Command_Query() { }
+
+    @Override
+    public boolean validateArgs(String ... args) {
+        return true;
+    }
+
+    /**
+     * Execute method Query in Collection Manager.
+     * @param server - the server
+     * @param object - the query
+     */
+
+    @Override
+    public ServerPacket executeOnServer(Server server, User user, Object object) {
+        if (server.authorize(user)) {
+            if (!(object instanceof Query)) {
+                return new ServerPacket(null, "The query is not correct.", false, true);
+            }
+            return server.getCollectionManager().query((Query) object);
+        }
+        return new ServerPacket(null,"You don't have rights to interact with collection!", false, true);
+    }
+
+    /**
+     * Reads the query from the arguments typed by user or takes a ready query.
+     */
+
+    @Override
+    public Packet executeOnClient(boolean authorized, User user, Object args) {
+        if (authorized) {
+            try {
+                Query query = args instanceof Query ? (Query) args : Query.parse((String[]) args);
+                return new Packet(this, user, query);
+            } catch (BadValue ex) {
+                System.out.println(ex.getMessage());
+                return null;
+            }
+        }
+        System.out.println("You must be logged in to continue working.");
+        return null;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
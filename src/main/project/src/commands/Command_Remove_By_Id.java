@@ -34,7 +34,7 @@ public class Command_Remove_By_Id extends Command implements Serializable {
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().removeById(user, object), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
@@ -1,6 +1,7 @@
 package src.commands;
 
 import src.database.User;
+import src.logic.Packet;
 import src.logic.ServerPacket;
 import src.server.Server;
 
@@ -9,6 +10,7 @@ import java.io.Serializable;
 /**
  * Class of command show.
  * This command shows collection in string presentation.
+ * If the client gives the size of chunk, the collection is streamed by chunks of this size.
  */
 
 public class Command_Show extends Command implements Serializable {
@@ -27,14 +29,30 @@ public class Command_Show extends Command implements Serializable {
     /**
      * Execute method Show in Collection Manager.
      * @param server -the manager of collection
+     * @param object - the number of products in one chunk or null to get the collection at once
      */
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
-            return new ServerPacket(server.getCollectionManager().show(), null, true, false);
+        if (server.authorize(user)) {
+            if (object instanceof Integer && (Integer) object > 0) {
+                return server.getCollectionManager().showStream((Integer) object);
+            }
+            return server.getCollectionManager().showSnapshot();
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
     }
 
+    @Override
+    public Packet executeOnClient(boolean authorized, User user, Object args) {
+        if (authorized && args instanceof Integer) {
+            return new Packet(this, user, args);
+        }
+        return super.executeOnClient(authorized, user, args);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -32,7 +32,7 @@ public class Command_Update_By_Id extends Command implements Serializable {
 
     @Override
     public ServerPacket executeOnServer(Server server, User user, Object object) {
-        if (server.checkUser(user.getLogin(), user.getPassword())) {
+        if (server.authorize(user)) {
             return new ServerPacket(null, server.getCollectionManager().updateId(user, object), true, true);
         }
         return new ServerPacket(null, "You don't have rights to interact with collection!", false, true);
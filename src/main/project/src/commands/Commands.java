@@ -0,0 +1,77 @@
+package src.commands;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Class of command table.
+ * Gives every command a fixed number, so packets can carry the number instead of the serialized command.
+ * New commands must be added to the end of the table, otherwise old clients will call wrong commands.
+ */
+
+public class Commands {
+
+    private static final ArrayList<Supplier<Command>> factories = new ArrayList<>();
+    private static final HashMap<Class<?>, Integer> ids = new HashMap<>();
+    private static final AtomicReferenceArray<Command> instances;
+
+    static {
+        register(Command_Login.class, Command_Login::new);
+        register(Command_Register.class, Command_Register::new);
+        register(Command_Help.class, Command_Help::new);
+        register(Command_Info.class, Command_Info::new);
+        register(Command_Show.class, Command_Show::new);
+        register(Command_Add.class, Command_Add::new);
+        register(Command_Update_By_Id.class, Command_Update_By_Id::new);
+        register(Command_Remove_By_Id.class, Command_Remove_By_Id::new);
+        register(Command_Clear.class, Command_Clear::new);
+        register(Command_Execute_Script.class, () -> new Command_Execute_Script(null));
+        register(Command_Exit.class, Command_Exit::new);
+        register(Command_Add_If_Max.class, Command_Add_If_Max::new);
+        register(Command_Add_If_Min.class, Command_Add_If_Min::new);
+        register(Command_History.class, Command_History::new);
+        register(Command_Filter_By_Unit_Of_Measure.class, Command_Filter_By_Unit_Of_Measure::new);
+        register(Command_Print_Unique_Part_Number.class, Command_Print_Unique_Part_Number::new);
+        register(Command_Print_Field_Descending_Owner.class, Command_Print_Field_Descending_Owner::new);
+        register(Command_Query.class, Command_Query::new);
+        instances = new AtomicReferenceArray<>(factories.size());
+    }
+
+    private Commands() {}
+
+    private static void register(Class<? extends Command> type, Supplier<Command> factory) {
+        ids.put(type, factories.size());
+        factories.add(factory);
+    }
+
+    /**
+     * Returns the number of the command.
+     * @param command - the command
+     * @return the number or -1 if the command is not in the table
+     */
+
+    public static int idOf(Command command) {
+        Integer id = ids.get(command.getClass());
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the command by its number. Commands are stateless on the server, so one instance is shared.
+     * @param id - the number of command
+     * @return the command or null if there is no command with this number
+     */
+
+    public static Command byId(int id) {
+        if (id < 0 || id >= instances.length()) {
+            return null;
+        }
+        Command command = instances.get(id);
+        if (command == null) {
+            instances.compareAndSet(id, null, factories.get(id).get());
+            command = instances.get(id);
+        }
+        return command;
+    }
+}
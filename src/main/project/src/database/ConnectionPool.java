@@ -0,0 +1,221 @@
+package src.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.server.Server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class of JDBC connection pool.
+ * Keeps from min to max open connections. A connection is borrowed for one operation and returned after it,
+ * so operations of different clients run in parallel on different connections.
+ * A connection which was idle for a while is validated before it is given out.
+ */
+
+public class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeout;
+    private final long validationInterval;
+
+    private final ArrayDeque<PooledConnection> idle;
+    private final ReentrantLock lock;
+    private final Condition released;
+    private int size;
+    private boolean closed;
+
+    /**
+     * Constructor
+     * @param url - the url of database
+     * @param user - the user of database
+     * @param password - the password of database
+     * @param minSize - the number of connections opened at start and kept open
+     * @param maxSize - the max number of open connections
+     * @param borrowTimeout - the time in milliseconds to wait for a free connection
+     */
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize, long borrowTimeout) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.borrowTimeout = borrowTimeout;
+        validationInterval = TimeUnit.SECONDS.toMillis(30);
+        idle = new ArrayDeque<>();
+        lock = new ReentrantLock();
+        released = lock.newCondition();
+
+        for (int i = 0; i < this.minSize; i++) {
+            try {
+                idle.push(new PooledConnection(this, open()));
+                size++;
+            } catch (SQLException ex) {
+                System.out.println("Unable to connect to data base");
+                logger.warn("Unable to connect to data base: {}", ex.getMessage());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Takes a free connection, opens a new one if all are busy and the pool is not full,
+     * otherwise waits until one is returned.
+     * @return the connection which must be closed after the operation
+     * @throws SQLException if there is no free connection in time or the database is not available
+     */
+
+    public PooledConnection borrow() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeout);
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed.");
+                }
+                PooledConnection connection = idle.poll();
+                if (connection != null) {
+                    if (validate(connection)) {
+                        connection.borrowed();
+                        return connection;
+                    }
+                    size--;
+                    continue;
+                }
+                if (size < maxSize) {
+                    size++;
+                    break;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    throw new SQLException("There is no free connection to data base.");
+                }
+                released.awaitNanos(left);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Waiting for a connection was interrupted.");
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            PooledConnection connection = new PooledConnection(this, open());
+            connection.borrowed();
+            return connection;
+        } catch (SQLException ex) {
+            discarded();
+            throw ex;
+        }
+    }
+
+    /**
+     * Takes the connection back. A broken connection is closed instead.
+     * @param connection - the returned connection
+     */
+
+    void release(PooledConnection connection) {
+        if (connection.isBroken()) {
+            connection.closeQuietly();
+            discarded();
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                connection.closeQuietly();
+                size--;
+                return;
+            }
+            idle.push(connection);
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discarded() {
+        lock.lock();
+        try {
+            size--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks the connection which was idle for longer than the validation interval.
+     */
+
+    private boolean validate(PooledConnection connection) {
+        if (System.currentTimeMillis() - connection.getLastUsed() < validationInterval) {
+            return true;
+        }
+        try {
+            if (connection.getConnection().isValid(VALIDATION_TIMEOUT)) {
+                return true;
+            }
+        } catch (SQLException ex) {
+            logger.warn("Unable to validate the connection: {}", ex.getMessage());
+        }
+        logger.warn("Connection to data base is not valid, opening a new one.");
+        connection.closeQuietly();
+        return false;
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            PooledConnection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.closeQuietly();
+                size--;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of open connections, both busy and idle.
+     */
+
+    public int getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
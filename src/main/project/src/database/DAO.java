@@ -1,8 +1,10 @@
 package src.database;
 
+import java.sql.SQLException;
+
 public interface DAO<Entity, Key> {
-    int create(Entity entity);
+    int create(Entity entity) throws SQLException;
     Entity read(String login);
-    void update(Entity entity);
-    void delete(int id);
+    void update(Entity entity) throws SQLException;
+    void delete(int id) throws SQLException;
 }
@@ -4,99 +4,217 @@ import com.sun.istack.internal.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import src.elements.Product;
+import src.metrics.Metrics;
 import src.server.Server;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Class of database manager.
+ * The one entry to users and products for the server: sends every call to the storage engine,
+ * records its latency and tells the write listener about changes of products.
+ */
 
 public class DBManager {
 
 
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
-    private String DB_URL = "jdbc:postgresql://localhost:5432/lab7";
-    private String USER = "postgres";
-    private String PASS = "B7OQdoHH";
-    private Connection connection;
-    private ProductDAO productDAO;
-    private UserDAO userDAO;
+    private final Storage storage;
+    private volatile Runnable writeListener;
+
+    /**
+     * Constructor, the storage is chosen by db.storage: jdbc (the default), memory or log,
+     * the file of log is set by db.log.
+     */
 
     public DBManager() {
-        connection = getDBConnection();
-        productDAO = new ProductDAO(connection);
-        userDAO = new UserDAO(connection);
+        this(createStorage());
     }
 
     public DBManager(String DB_URL, String USER, String PASS) {
-        this.DB_URL = DB_URL;
-        this.USER = USER;
-        this.PASS = PASS;
-        connection = getDBConnection();
+        this(new JdbcStorage(DB_URL, USER, PASS));
+    }
+
+    /**
+     * Constructor
+     * @param storage - the storage engine
+     */
+
+    public DBManager(Storage storage) {
+        this.storage = storage;
     }
 
-    private Connection getDBConnection() {
+    private static Storage createStorage() {
+        String engine = System.getProperty("db.storage", "jdbc");
+        switch (engine) {
+            case "memory":
+                logger.info("Users and products are kept in memory.");
+                return new InMemoryStorage();
+            case "log":
+                Path path = Paths.get(System.getProperty("db.log", "lab7.log"));
+                try {
+                    logger.info("Users and products are kept in the log {}.", path);
+                    return new LogStorage(path);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Unable to open the log " + path + ": " + ex.getMessage(), ex);
+                }
+            case "jdbc":
+                return new JdbcStorage();
+            default:
+                throw new IllegalArgumentException("Unknown storage " + engine + ", use jdbc, memory or log.");
+        }
+    }
+
+    /**
+     * Turns on the write-behind mode of PostgreSQL storage, other storages ignore it.
+     * @param batchSize - the max number of changes in one batch
+     * @param lingerMs - the time to wait for more changes before a batch is written
+     * @param idBlock - the number of ids taken from the sequence at once
+     */
+
+    public void enableWriteBehind(int batchSize, long lingerMs, int idBlock) {
+        if (storage instanceof JdbcStorage) {
+            ((JdbcStorage) storage).enableWriteBehind(batchSize, lingerMs, idBlock);
+        }
+    }
+
+    public boolean isWriteBehind() {
+        return getWriteBehind() != null;
+    }
+
+    /**
+     * Sets the listener which is called before every change of products is sent to the database.
+     * @param writeListener - the listener or null
+     */
+
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    private void beforeWrite() {
+        Runnable listener = writeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Runs a call of database and records its latency.
+     * @param call - the name of call
+     * @param action - the call
+     */
+
+    private static <T> T timed(String call, Supplier<T> action) {
+        long start = System.nanoTime();
         try {
-            Class.forName("org.postgresql.Driver");
-        } catch (ClassNotFoundException ex) {
-            System.out.println("PostgreSQL JDBC Driver is not found. Include it in your library path");
+            return action.get();
+        } finally {
+            Metrics.shared.database(call, System.nanoTime() - start);
         }
+    }
+
+    private static void timed(String call, Runnable action) {
+        long start = System.nanoTime();
         try {
-            return DriverManager.getConnection(DB_URL, USER, PASS);
-        } catch (SQLException ex) {
-            System.out.println("Unable to connect to data base");
+            action.run();
+        } finally {
+            Metrics.shared.database(call, System.nanoTime() - start);
         }
-        return null;
     }
 
     public void createUser(@NotNull final User user) {
-        userDAO.create(user);
+        timed("users.create", () -> storage.createUser(user.getLogin(), user.getPassword()));
     }
 
-    public int createUser(@NotNull final String login, @NotNull final String pass) {return userDAO.create(login, pass);}
+    public int createUser(@NotNull final String login, @NotNull final String pass) {return timed("users.create", () -> storage.createUser(login, pass));}
 
     public int createProduct(@NotNull final Product product) {
-        return productDAO.create(product);
+        beforeWrite();
+        return timed("products.create", () -> storage.createProduct(product));
     }
 
-    public boolean checkUser(@NotNull final String login, @NotNull final String pass) {logger.info("checkUser"); return userDAO.isAvailable(login, pass);}
+    public boolean checkUser(@NotNull final String login, @NotNull final String pass) {return timed("users.check", () -> storage.checkUser(login, pass));}
 
     public User readUser(@NotNull final String login, @NotNull final String pass) {
-       return userDAO.read(login);
+       return timed("users.read", () -> storage.readUser(login));
     }
 
     public Product readProduct(@NotNull final String name) {
-       return productDAO.read(name);
+       return timed("products.read", () -> storage.readProduct(name));
     }
 
     public ArrayList<Product> readAllProducts() {
-      return productDAO.readAll();
+        ArrayList<Product> products = new ArrayList<>();
+        readAllProducts(products::addAll);
+        return products;
+    }
+
+    /**
+     * Reads all products by pages, so the whole table is not kept in memory twice.
+     * @param consumer - takes the pages in order of ids
+     * @return the number of products read
+     */
+
+    public int readAllProducts(@NotNull final Consumer<List<Product>> consumer) {
+        return readAllProducts(0, consumer);
+    }
+
+    /**
+     * Reads the products with ids greater than the given one by pages.
+     * @param afterId - the id after which products are read
+     * @param consumer - takes the pages in order of ids
+     * @return the number of products read
+     */
+
+    public int readAllProducts(int afterId, @NotNull final Consumer<List<Product>> consumer) {
+        return timed("products.readAll", () -> storage.readProducts(afterId, consumer));
     }
 
     public void updateUser(@NotNull final User user) {
-        userDAO.update(user);
+        timed("users.update", () -> storage.updateUser(user));
     }
 
-    public void updateProduct(@NotNull final Product product) { productDAO.update(product); }
+    public void updateProduct(@NotNull final Product product) {
+        beforeWrite();
+        timed("products.update", () -> storage.updateProduct(product));
+    }
 
     public void deleteUser(@NotNull final int id) {
-        userDAO.delete(id);
+        timed("users.delete", () -> storage.deleteUser(id));
     }
 
     public void deleteProduct(@NotNull final int id) {
-        productDAO.delete(id);
+        beforeWrite();
+        timed("products.delete", () -> storage.deleteProduct(id));
+    }
+
+    /**
+     * Removes several products at once.
+     * @param ids - the ids of products
+     */
+
+    public void deleteProducts(@NotNull final Collection<Integer> ids) {
+        beforeWrite();
+        timed("products.deleteAll", () -> storage.deleteProducts(ids));
     }
 
     public void close() {
-        try {
-            connection.close();
-        } catch (SQLException ex) {
-            System.out.println(ex.getMessage());
-        }
+        storage.close();
+    }
+
+    public WriteBehindQueue getWriteBehind() {
+        return storage instanceof JdbcStorage ? ((JdbcStorage) storage).getWriteBehind() : null;
     }
 
-    public Connection getConnection() {
-        return connection;
+    public Storage getStorage() {
+        return storage;
     }
 
 }
@@ -0,0 +1,62 @@
+package src.database;
+
+import src.metrics.Metrics;
+
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class of id allocator.
+ * Takes ids from the sequence of products by blocks, so a new product gets its id without a query.
+ * The lock is not a monitor, so a virtual thread waiting for the sequence does not hold its carrier thread.
+ */
+
+public class IdAllocator {
+
+    private final ProductDAO productDAO;
+    private final int blockSize;
+    private final ReentrantLock lock;
+    private int[] block;
+    private int next;
+
+    /**
+     * Constructor
+     * @param productDAO - the dao reading the sequence
+     * @param blockSize - the number of ids taken at once
+     */
+
+    IdAllocator(ProductDAO productDAO, int blockSize) {
+        this.productDAO = productDAO;
+        this.blockSize = Math.max(1, blockSize);
+        block = new int[0];
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Returns the next free id.
+     * @return the id or -1 if the sequence is not available
+     */
+
+    int next() {
+        lock.lock();
+        try {
+            if (next == block.length) {
+                try {
+                    long start = System.nanoTime();
+                    block = productDAO.nextIds(blockSize);
+                    Metrics.shared.database("products.nextIds", System.nanoTime() - start);
+                    next = 0;
+                } catch (SQLException ex) {
+                    System.out.println(ex.getMessage());
+                    return -1;
+                }
+                if (block.length == 0) {
+                    return -1;
+                }
+            }
+            return block[next++];
+        } finally {
+            lock.unlock();
+        }
+    }
+}
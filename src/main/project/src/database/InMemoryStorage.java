@@ -0,0 +1,192 @@
+package src.database;
+
+import src.elements.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Class of storage in memory.
+ * Keeps users and products in maps and gives ids from counters, nothing outlives the process.
+ * Lets the server, benchmarks and load tests run without PostgreSQL.
+ */
+
+public class InMemoryStorage implements Storage {
+
+    private final ConcurrentSkipListMap<Integer, Product> products;
+    private final ConcurrentHashMap<String, User> users;
+    private final AtomicInteger productIds;
+    private final AtomicInteger userIds;
+    private final int pageSize;
+
+    /**
+     * Constructor
+     */
+
+    public InMemoryStorage() {
+        products = new ConcurrentSkipListMap<>();
+        users = new ConcurrentHashMap<>();
+        productIds = new AtomicInteger();
+        userIds = new AtomicInteger();
+        pageSize = Math.max(1, Integer.getInteger("db.pageSize", 10000));
+    }
+
+    /**
+     * Constructor
+     * @param products - the products kept from the start, with their ids
+     */
+
+    public InMemoryStorage(Collection<Product> products) {
+        this();
+        for (Product product : products) {
+            restoreProduct(product);
+        }
+    }
+
+    /**
+     * Puts the product with its id, the next ids are given after it.
+     */
+
+    protected void restoreProduct(Product product) {
+        products.put(product.getId(), product);
+        productIds.accumulateAndGet(product.getId(), Math::max);
+    }
+
+    /**
+     * Puts the user with its id, the next ids are given after it.
+     */
+
+    protected void restoreUser(User user) {
+        users.put(user.getLogin(), user);
+        userIds.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    /**
+     * Makes the next ids greater than the given ones, so ids of removed elements are not given again.
+     */
+
+    protected void restoreIds(int lastProductId, int lastUserId) {
+        productIds.accumulateAndGet(lastProductId, Math::max);
+        userIds.accumulateAndGet(lastUserId, Math::max);
+    }
+
+    protected int getLastProductId() {
+        return productIds.get();
+    }
+
+    protected int getLastUserId() {
+        return userIds.get();
+    }
+
+    /**
+     * Returns the users and the products in order of ids, for writing them elsewhere.
+     */
+
+    protected Collection<User> getUsers() {
+        return users.values();
+    }
+
+    protected Collection<Product> getProducts() {
+        return products.values();
+    }
+
+    @Override
+    public int createUser(String login, String pass) {
+        User user = new User(login, pass);
+        user.setId(userIds.incrementAndGet());
+        return users.putIfAbsent(login, user) == null ? user.getId() : -1;
+    }
+
+    @Override
+    public boolean checkUser(String login, String pass) {
+        User user = users.get(login);
+        return user != null && user.getPassword().equals(pass);
+    }
+
+    @Override
+    public User readUser(String login) {
+        User user = users.get(login);
+        if (user == null) {
+            user = new User();
+            user.setId(-1);
+        }
+        return user;
+    }
+
+    @Override
+    public void updateUser(User user) {
+        for (User stored : users.values()) {
+            if (stored.getId() == user.getId()) {
+                stored.setPassword(user.getPassword());
+            }
+        }
+    }
+
+    @Override
+    public void deleteUser(int id) {
+        users.values().removeIf(user -> user.getId() == id);
+    }
+
+    @Override
+    public int createProduct(Product product) {
+        int id = productIds.incrementAndGet();
+        product.setId(id);
+        products.put(id, product);
+        return id;
+    }
+
+    @Override
+    public Product readProduct(String name) {
+        for (Product product : products.values()) {
+            if (product.getName().equals(name)) {
+                return product;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int readProducts(int afterId, Consumer<List<Product>> consumer) {
+        int count = 0;
+        ArrayList<Product> page = new ArrayList<>(Math.min(pageSize, products.size()));
+        for (Product product : products.tailMap(afterId, false).values()) {
+            page.add(product);
+            if (page.size() == pageSize) {
+                consumer.accept(page);
+                count += page.size();
+                page = new ArrayList<>(pageSize);
+            }
+        }
+        if (!page.isEmpty()) {
+            consumer.accept(page);
+            count += page.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void updateProduct(Product product) {
+        products.replace(product.getId(), product);
+    }
+
+    @Override
+    public void deleteProduct(int id) {
+        products.remove(id);
+    }
+
+    @Override
+    public void deleteProducts(Collection<Integer> ids) {
+        for (int id : ids) {
+            products.remove(id);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,207 @@
+package src.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.elements.Product;
+import src.server.Server;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Class of storage in PostgreSQL.
+ * Keeps users and products in tables through the daos and a pool of connections. The address is set
+ * by db.url, db.user and db.password, in the write-behind mode changes of products are written by batches.
+ */
+
+public class JdbcStorage implements Storage {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private String DB_URL = "jdbc:postgresql://localhost:5432/lab7";
+    private String USER = "postgres";
+    private String PASS = "B7OQdoHH";
+    private ConnectionPool pool;
+    private ProductDAO productDAO;
+    private UserDAO userDAO;
+    private WriteBehindQueue writeBehind;
+    private IdAllocator idAllocator;
+
+    public JdbcStorage() {
+        DB_URL = System.getProperty("db.url", DB_URL);
+        USER = System.getProperty("db.user", USER);
+        PASS = System.getProperty("db.password", PASS);
+        init();
+    }
+
+    public JdbcStorage(String DB_URL, String USER, String PASS) {
+        this.DB_URL = DB_URL;
+        this.USER = USER;
+        this.PASS = PASS;
+        init();
+    }
+
+    /**
+     * Opens the pool of connections. Its size is set by db.pool.min and db.pool.max,
+     * db.pool.timeout is the time in milliseconds to wait for a free connection.
+     */
+
+    private void init() {
+        try {
+            Class.forName("org.postgresql.Driver");
+        } catch (ClassNotFoundException ex) {
+            System.out.println("PostgreSQL JDBC Driver is not found. Include it in your library path");
+        }
+        pool = new ConnectionPool(DB_URL, USER, PASS, Integer.getInteger("db.pool.min", 2),
+                Integer.getInteger("db.pool.max", 10), Long.getLong("db.pool.timeout", 10000));
+        productDAO = new ProductDAO(pool);
+        userDAO = new UserDAO(pool);
+        if (Boolean.getBoolean("db.writeBehind")) {
+            enableWriteBehind(Integer.getInteger("db.batchSize", 100), Long.getLong("db.lingerMs", 20),
+                    Integer.getInteger("db.idBlock", 100));
+        }
+    }
+
+    /**
+     * Turns on the write-behind mode: changes of products are queued and written by batches in background,
+     * ids of new products are taken from blocks of the sequence. The queue keeps its journal in db.writeBehindLog
+     * (write-behind.log by default) with the sync policy of db.logSync, if the journal can not be opened
+     * changes are written at once as before.
+     * @param batchSize - the max number of changes in one batch
+     * @param lingerMs - the time to wait for more changes before a batch is written
+     * @param idBlock - the number of ids taken from the sequence at once
+     */
+
+    public void enableWriteBehind(int batchSize, long lingerMs, int idBlock) {
+        if (writeBehind == null) {
+            idAllocator = new IdAllocator(productDAO, idBlock);
+            try {
+                writeBehind = new WriteBehindQueue(productDAO, batchSize, lingerMs,
+                        Paths.get(System.getProperty("db.writeBehindLog", "write-behind.log")),
+                        System.getProperty("db.logSync", "always"));
+            } catch (IOException ex) {
+                logger.error("Unable to open the journal of write-behind mode, changes are written at once: {}",
+                        ex.getMessage());
+                return;
+            }
+            logger.info("Write-behind mode is on.");
+        }
+    }
+
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public int createUser(String login, String pass) {
+        return userDAO.create(login, pass);
+    }
+
+    @Override
+    public boolean checkUser(String login, String pass) {
+        return userDAO.isAvailable(login, pass);
+    }
+
+    @Override
+    public User readUser(String login) {
+        return userDAO.read(login);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        userDAO.update(user);
+    }
+
+    @Override
+    public void deleteUser(int id) {
+        userDAO.delete(id);
+    }
+
+    @Override
+    public int createProduct(Product product) {
+        if (writeBehind != null) {
+            int id = idAllocator.next();
+            if (id != -1) {
+                try {
+                    writeBehind.insert(id, product);
+                } catch (StorageException ex) {
+                    logger.error(ex.getMessage());
+                    return -1;
+                }
+            }
+            return id;
+        }
+        try {
+            return productDAO.create(product);
+        } catch (SQLException ex) {
+            logger.error("Unable to add a product: {}", ex.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public Product readProduct(String name) {
+        return productDAO.read(name);
+    }
+
+    @Override
+    public int readProducts(int afterId, Consumer<List<Product>> consumer) {
+        return productDAO.readAll(afterId, consumer);
+    }
+
+    @Override
+    public void updateProduct(Product product) {
+        if (writeBehind != null) {
+            writeBehind.update(product);
+            return;
+        }
+        try {
+            productDAO.update(product);
+        } catch (SQLException ex) {
+            throw new StorageException("Unable to update product " + product.getId() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void deleteProduct(int id) {
+        if (writeBehind != null) {
+            writeBehind.delete(id);
+            return;
+        }
+        try {
+            productDAO.delete(id);
+        } catch (SQLException ex) {
+            throw new StorageException("Unable to remove product " + id + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void deleteProducts(Collection<Integer> ids) {
+        if (writeBehind != null) {
+            writeBehind.delete(ids);
+            return;
+        }
+        try {
+            productDAO.delete(ids);
+        } catch (SQLException ex) {
+            throw new StorageException("Unable to remove " + ids.size() + " products: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package src.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.elements.Product;
+import src.logic.BinaryCodec;
+import src.logic.BinaryReader;
+import src.logic.BinaryWriter;
+import src.server.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class of storage in a local write-ahead log.
+ * Keeps users and products in memory like InMemoryStorage and appends every change to the log as a binary record,
+ * at start the snapshot and the files of log are read and their changes are applied again,
+ * so the server needs no database. With db.log = lab7.log the files are lab7.log.snapshot and lab7.log.1,
+ * lab7.log.2, ... in order of writing.
+ * The change is made in memory and queued to the log under the lock, so records are in the order of changes,
+ * the wait for the disk is done after the lock is released, so concurrent changes share one write and one sync.
+ * db.logSync sets when a change is acknowledged: always - after it is on the disk, a number of milliseconds -
+ * after it is written to the file which is forced with this interval, never - after it is written to the file.
+ * Every db.logCompactInterval seconds, if the current file is larger than db.logCompactBytes,
+ * the log is compacted: it goes on in a new file and the state is written to the snapshot, then the old files
+ * are removed. Changes are not stopped while the snapshot is written, the changes it may have partly caught
+ * are in the new file and replaying them over the snapshot gives the same result.
+ */
+
+public class LogStorage extends InMemoryStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+
+    private static final int CREATE_USER = 1;
+    private static final int UPDATE_USER = 2;
+    private static final int DELETE_USER = 3;
+    private static final int CREATE_PRODUCT = 4;
+    private static final int UPDATE_PRODUCT = 5;
+    private static final int DELETE_PRODUCTS = 6;
+    private static final int LAST_IDS = 7;
+
+    private final Path path;
+    private final BinaryCodec codec;
+    private final BinaryWriter writer;
+    private final ReentrantLock lock;
+    private final ReentrantLock compaction;
+    private final long compactBytes;
+    private final WriteAheadLog log;
+    private ScheduledExecutorService compactor;
+    private long generation;
+    private int replayed;
+
+    /**
+     * Constructor, reads the snapshot and the log and opens the log for appending.
+     * @param path - the path of log, the files are named after it
+     * @throws IOException if the files can not be read or have an unknown format
+     */
+
+    public LogStorage(Path path) throws IOException {
+        this.path = path.toAbsolutePath();
+        codec = new BinaryCodec();
+        writer = new BinaryWriter();
+        lock = new ReentrantLock();
+        compaction = new ReentrantLock();
+        compactBytes = Long.getLong("db.logCompactBytes", 16 << 20);
+        String policy = System.getProperty("db.logSync", "always");
+        WriteAheadLog.Sync sync = WriteAheadLog.Sync.parse(policy);
+
+        Path snapshot = snapshot();
+        if (Files.isRegularFile(snapshot)) {
+            if (WriteAheadLog.read(snapshot, this::apply) < Files.size(snapshot)) {
+                throw new IOException("The snapshot " + snapshot + " is broken.");
+            }
+        }
+        List<Long> generations = generations();
+        long validLength = 0;
+        for (long number : generations) {
+            validLength = WriteAheadLog.read(segment(number), this::apply);
+            if (number != generations.get(generations.size() - 1) && validLength < Files.size(segment(number))) {
+                logger.warn("The log {} has a broken tail, the changes after it may be lost.", segment(number));
+            }
+        }
+        generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1);
+        log = new WriteAheadLog(segment(generation), validLength, sync,
+                sync == WriteAheadLog.Sync.INTERVAL ? Long.parseLong(policy) : 0);
+        logger.info("{} changes were read from the log {}, sync is {}.", replayed, this.path, policy);
+
+        long interval = Long.getLong("db.logCompactInterval", 60);
+        if (interval > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfLarge, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private Path snapshot() {
+        return path.resolveSibling(path.getFileName() + ".snapshot");
+    }
+
+    private Path segment(long generation) {
+        return WriteAheadLog.segment(path, generation);
+    }
+
+    private List<Long> generations() throws IOException {
+        return WriteAheadLog.generations(path);
+    }
+
+    private void apply(ByteBuffer record) throws IOException {
+        BinaryReader reader = new BinaryReader(record);
+        int type = reader.readByte();
+        switch (type) {
+            case CREATE_USER: {
+                int id = reader.readVarInt();
+                User user = new User(reader.readString(), reader.readString());
+                user.setId(id);
+                restoreUser(user);
+                break;
+            }
+            case UPDATE_USER: {
+                User user = new User();
+                user.setId(reader.readVarInt());
+                user.setPassword(reader.readString());
+                super.updateUser(user);
+                break;
+            }
+            case DELETE_USER:
+                super.deleteUser(reader.readVarInt());
+                break;
+            case CREATE_PRODUCT:
+                restoreProduct(codec.readProduct(reader));
+                break;
+            case UPDATE_PRODUCT:
+                super.updateProduct(codec.readProduct(reader));
+                break;
+            case DELETE_PRODUCTS:
+                for (int i = reader.readCount(); i > 0; i--) {
+                    super.deleteProduct(reader.readVarInt());
+                }
+                break;
+            case LAST_IDS:
+                restoreIds(reader.readVarInt(), reader.readVarInt());
+                break;
+            default:
+                throw new IOException("Unknown change " + type + " in the log " + path + ".");
+        }
+        replayed++;
+    }
+
+    @Override
+    public int createUser(String login, String pass) {
+        int id;
+        long sequence;
+        lock.lock();
+        try {
+            id = super.createUser(login, pass);
+            if (id == -1) {
+                return -1;
+            }
+            writer.reset();
+            writer.writeByte(CREATE_USER);
+            writer.writeVarInt(id);
+            writer.writeString(login);
+            writer.writeString(pass);
+            sequence = log.enqueue(writer);
+            if (sequence == -1) {
+                super.deleteUser(id);
+                logger.error("The user {} was not saved: the log {} is broken or closed.", login, path);
+                return -1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return log.await(sequence) ? id : failed();
+    }
+
+    @Override
+    public void updateUser(User user) {
+        long sequence;
+        lock.lock();
+        try {
+            writer.reset();
+            writer.writeByte(UPDATE_USER);
+            writer.writeVarInt(user.getId());
+            writer.writeString(user.getPassword());
+            sequence = enqueue();
+            super.updateUser(user);
+        } finally {
+            lock.unlock();
+        }
+        await(sequence);
+    }
+
+    @Override
+    public void deleteUser(int id) {
+        long sequence;
+        lock.lock();
+        try {
+            writer.reset();
+            writer.writeByte(DELETE_USER);
+            writer.writeVarInt(id);
+            sequence = enqueue();
+            super.deleteUser(id);
+        } finally {
+            lock.unlock();
+        }
+        await(sequence);
+    }
+
+    @Override
+    public int createProduct(Product product) {
+        int id;
+        long sequence;
+        lock.lock();
+        try {
+            id = super.createProduct(product);
+            writer.reset();
+            writer.writeByte(CREATE_PRODUCT);
+            codec.writeProduct(writer, product);
+            sequence = log.enqueue(writer);
+            if (sequence == -1) {
+                super.deleteProduct(id);
+                logger.error("The product was not saved: the log {} is broken or closed.", path);
+                return -1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return log.await(sequence) ? id : failed();
+    }
+
+    @Override
+    public void updateProduct(Product product) {
+        long sequence;
+        lock.lock();
+        try {
+            writer.reset();
+            writer.writeByte(UPDATE_PRODUCT);
+            codec.writeProduct(writer, product);
+            sequence = enqueue();
+            super.updateProduct(product);
+        } finally {
+            lock.unlock();
+        }
+        await(sequence);
+    }
+
+    @Override
+    public void deleteProduct(int id) {
+        deleteProducts(Collections.singletonList(id));
+    }
+
+    @Override
+    public void deleteProducts(Collection<Integer> ids) {
+        long sequence;
+        lock.lock();
+        try {
+            writer.reset();
+            writer.writeByte(DELETE_PRODUCTS);
+            writer.writeVarInt(ids.size());
+            for (int id : ids) {
+                writer.writeVarInt(id);
+            }
+            sequence = enqueue();
+            super.deleteProducts(ids);
+        } finally {
+            lock.unlock();
+        }
+        await(sequence);
+    }
+
+    /**
+     * Queues the record prepared in writer. Called under the lock before the change is made in memory,
+     * so a change which can not be logged is not made at all.
+     * @throws StorageException if the log is broken or closed
+     */
+
+    private long enqueue() {
+        long sequence = log.enqueue(writer);
+        if (sequence == -1) {
+            throw new StorageException("The change was not saved: the log " + path + " is broken or closed.");
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits for the queued record. If the log has failed meanwhile, the record may or may not be on the disk,
+     * so the change is not undone: the log takes no more changes and the next start shows what was saved.
+     * @throws StorageException if the log has failed
+     */
+
+    private void await(long sequence) {
+        if (!log.await(sequence)) {
+            throw new StorageException("The change may be lost: the log " + path + " has failed.");
+        }
+    }
+
+    private int failed() {
+        logger.error("The change may be lost: the log {} has failed.", path);
+        return -1;
+    }
+
+    private void compactIfLarge() {
+        if (log.getSize() >= compactBytes) {
+            try {
+                compact();
+            } catch (IOException ex) {
+                logger.warn("Unable to compact the log {}: {}", path, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes all users and products to the snapshot and removes the files of log written before it.
+     * Does nothing if the log is being compacted already.
+     * @throws IOException if the snapshot can not be written
+     */
+
+    public void compact() throws IOException {
+        if (!compaction.tryLock()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long next;
+            int lastProductId;
+            int lastUserId;
+            lock.lock();
+            try {
+                next = generation + 1;
+                if (!log.roll(segment(next))) {
+                    throw new IOException("The log " + path + " is broken.");
+                }
+                generation = next;
+                lastProductId = getLastProductId();
+                lastUserId = getLastUserId();
+            } finally {
+                lock.unlock();
+            }
+
+            BinaryWriter writer = new BinaryWriter();
+            int records = 0;
+            try (WriteAheadLog.SnapshotWriter snapshot = new WriteAheadLog.SnapshotWriter(snapshot())) {
+                writer.reset();
+                writer.writeByte(LAST_IDS);
+                writer.writeVarInt(lastProductId);
+                writer.writeVarInt(lastUserId);
+                snapshot.append(writer);
+                for (User user : getUsers()) {
+                    writer.reset();
+                    writer.writeByte(CREATE_USER);
+                    writer.writeVarInt(user.getId());
+                    writer.writeString(user.getLogin());
+                    writer.writeString(user.getPassword());
+                    snapshot.append(writer);
+                    records++;
+                }
+                for (Product product : getProducts()) {
+                    writer.reset();
+                    writer.writeByte(CREATE_PRODUCT);
+                    codec.writeProduct(writer, product);
+                    snapshot.append(writer);
+                    records++;
+                }
+                snapshot.commit();
+            }
+            for (long old : generations()) {
+                if (old < next) {
+                    Files.deleteIfExists(segment(old));
+                }
+            }
+            logger.info("The log {} was compacted into {} records in {} ms.", path, records,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            compaction.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        log.close();
+    }
+}
@@ -0,0 +1,124 @@
+package src.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class of connection borrowed from the pool.
+ * Keeps the prepared statements of its connection, so a query is parsed once per connection.
+ * Closing returns the connection to the pool, the cached statements stay open.
+ */
+
+public class PooledConnection implements AutoCloseable {
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private long lastUsed;
+    private boolean broken;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        lastUsed = System.currentTimeMillis();
+        statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException ignored) {
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the prepared statement for the query, prepares it on the first call.
+     * The statement must not be closed by the caller.
+     * @param query - the sql query
+     * @throws SQLException if the query can not be prepared
+     */
+
+    public PreparedStatement prepare(String query) throws SQLException {
+        PreparedStatement statement = statements.get(query);
+        if (statement == null || statement.isClosed()) {
+            try {
+                statement = connection.prepareStatement(query);
+            } catch (SQLException ex) {
+                markBroken(ex);
+                throw ex;
+            }
+            statements.put(query, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Marks the connection broken if the error came from the connection itself,
+     * such a connection is closed instead of returning to the pool.
+     * @param ex - the error of an operation
+     */
+
+    public void markBroken(SQLException ex) {
+        String state = ex.getSQLState();
+        if (state == null || state.startsWith("08")) {
+            broken = true;
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    void borrowed() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    void closeQuietly() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Returns the connection to the pool.
+     */
+
+    @Override
+    public void close() {
+        lastUsed = System.currentTimeMillis();
+        try {
+            broken = broken || connection.isClosed();
+        } catch (SQLException ex) {
+            broken = true;
+        }
+        pool.release(this);
+    }
+}
@@ -14,50 +14,63 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class ProductDAO implements DAO<Product, String> {
 
-    private Connection connection;
+    private ConnectionPool pool;
     private static final Logger logger = LoggerFactory.getLogger(ProductDAO.class);
 
-    ProductDAO(final Connection connection) {
-        this.connection = connection;
+    ProductDAO(final ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
-    synchronized public int create(@NotNull final Product product) {
-        try(PreparedStatement statement = connection.prepareStatement(sqlQueries.INSERT.QUERY)) {
-            statement.setString(1, product.getName());
-            statement.setFloat(2, product.getCoordinates().getX());
-            statement.setDouble(3, product.getCoordinates().getY());
-            statement.setDate(4, Date.valueOf(product.getCreationDate().toString()));
-            statement.setLong(5, product.getPrice());
-            statement.setString(6, product.getPartNumber());
-            statement.setString(7, product.getUnitOfMeasure().toString());
-            statement.setString(8, product.getOwner().getName());
-            statement.setInt(9, product.getOwner().getHeight());
-            statement.setString(10, product.getOwner().getEyeColor().toString());
-            statement.setString(11, product.getOwner().getLocation().getName());
-            statement.setLong(12, product.getOwner().getLocation().getX());
-            statement.setLong(13, product.getOwner().getLocation().getY());
-            statement.setInt(14, product.getOwner().getLocation().getZ());
-            statement.setString(15, product.getHost());
-            final ResultSet rs = statement.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1);
-            } else {
-                return -1;
+    public int create(@NotNull final Product product) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.INSERT.QUERY);
+            bind(statement, product);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
             }
-        } catch(SQLException ex) {
-            System.out.println(ex.getMessage());
-            return -1;
         }
     }
 
+    /**
+     * Sets the fields of product to the parameters 1-15 of statement.
+     */
+
+    private static void bind(PreparedStatement statement, Product product) throws SQLException {
+        statement.setString(1, product.getName());
+        statement.setFloat(2, product.getCoordinates().getX());
+        statement.setDouble(3, product.getCoordinates().getY());
+        statement.setDate(4, Date.valueOf(product.getCreationDate().toString()));
+        statement.setLong(5, product.getPrice());
+        statement.setString(6, product.getPartNumber());
+        statement.setString(7, product.getUnitOfMeasure().toString());
+        statement.setString(8, product.getOwner().getName());
+        statement.setInt(9, product.getOwner().getHeight());
+        statement.setString(10, product.getOwner().getEyeColor().toString());
+        statement.setString(11, product.getOwner().getLocation().getName());
+        statement.setLong(12, product.getOwner().getLocation().getX());
+        statement.setLong(13, product.getOwner().getLocation().getY());
+        statement.setInt(14, product.getOwner().getLocation().getZ());
+        statement.setString(15, product.getHost());
+    }
+
     @Override
-    synchronized public Product read(@NotNull final String name) {
+    public Product read(@NotNull final String name) {
         Product product = new Product();
-        try(PreparedStatement statement = connection.prepareStatement(sqlQueries.GET.QUERY)) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.GET.QUERY);
             statement.setString(1, name);
         } catch(SQLException ex) {
             System.out.println(ex.getMessage());
@@ -65,62 +78,217 @@ public class ProductDAO implements DAO<Product, String> {
         return product;
     }
 
-    synchronized public ArrayList<Product> readAll() {
+    /**
+     * Reads all products.
+     * @return the products in order of ids
+     */
+
+    public ArrayList<Product> readAll() {
         ArrayList<Product> products = new ArrayList<>();
+        readAll(0, products::addAll);
+        return products;
+    }
 
-        try(PreparedStatement statement = connection.prepareStatement(sqlQueries.GET_ALL.QUERY)) {
-            final ResultSet rs = statement.executeQuery();
-            while(rs.next()) {
-                try {
-                Product product = new Product(rs.getString("name"),
-                        new Coordinates(rs.getFloat("coordinate_x"), rs.getDouble("coordinate_y")),
-                        LocalDate.parse(rs.getString("creation_date")), rs.getLong("price"),
-                        rs.getString("part_number"),  rs.getString("unit_of_measure"),
-                        new Person(rs.getString("person_name"), rs.getInt("person_height"), rs.getString("person_eyeColor"),
-                        new Location(rs.getLong("location_x"), rs.getLong("location_y"), rs.getInt("location_z"), rs.getString("location_name"))));
-                product.setId(rs.getInt("id"));
-                product.setHost(rs.getString("creator"));
-                products.add(product);
-                } catch(ValidationException ex) {
-                    System.out.println(ex.getMessage());
+    /**
+     * Reads all products by pages of db.pageSize rows in order of ids, each page starts after the last id
+     * of the previous one, so no page is read twice and the database does not skip rows.
+     * The next page is read in background while the consumer takes the current one.
+     * @param afterId - the products with greater ids are read, 0 for all products
+     * @param consumer - takes the pages in order
+     * @return the number of products read
+     * @throws StorageException if a page can not be read, so a part of products is never taken for all of them
+     */
+
+    public int readAll(final int afterId, @NotNull final Consumer<List<Product>> consumer) {
+        int pageSize = Math.max(1, Integer.getInteger("db.pageSize", 10000));
+        ExecutorService reader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long started = System.nanoTime();
+        int count = 0;
+        int pages = 0;
+        try {
+            List<Product> page = readPage(afterId, pageSize);
+            while (!page.isEmpty()) {
+                int lastId = page.get(page.size() - 1).getId();
+                Future<List<Product>> next = page.size() < pageSize ? null : reader.submit(() -> readPage(lastId, pageSize));
+                consumer.accept(page);
+                count += page.size();
+                if (++pages % 10 == 0) {
+                    logger.info("Loaded {} products.", count);
                 }
+                page = next == null ? Collections.<Product>emptyList() : next.get();
             }
-            rs.close();
         } catch (SQLException ex) {
-          //  System.out.println(ex.getMessage());
-            ex.printStackTrace();
+            throw new StorageException("Unable to read products after " + count + " of them: " + ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            throw new StorageException("Unable to read products after " + count + " of them: "
+                    + ex.getCause().getMessage(), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Reading of products was interrupted after " + count + " of them.", ex);
+        } finally {
+            reader.shutdownNow();
         }
+        logger.info("Loaded {} products in {} ms.", count, (System.nanoTime() - started) / 1_000_000);
+        return count;
+    }
+
+    /**
+     * Reads one page of products.
+     * @param afterId - the products with greater ids are read
+     * @param limit - the max number of products
+     * @return the products in order of ids, rows which are not valid products are skipped
+     * @throws SQLException if the database is not available
+     */
 
+    private List<Product> readPage(int afterId, int limit) throws SQLException {
+        ArrayList<Product> products = new ArrayList<>(limit);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.GET_PAGE.QUERY);
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        Product product = new Product(rs.getString(2), new Coordinates(rs.getFloat(3), rs.getDouble(4)),
+                                rs.getDate(5).toLocalDate(), rs.getLong(6), rs.getString(7), rs.getString(8),
+                                new Person(rs.getString(9), rs.getInt(10), rs.getString(11),
+                                new Location(rs.getLong(13), rs.getLong(14), rs.getInt(15), rs.getString(12))));
+                        product.setId(rs.getInt(1));
+                        product.setHost(rs.getString(16));
+                        products.add(product);
+                    } catch (ValidationException | NullPointerException ex) {
+                        System.out.println("Product " + rs.getInt(1) + " is skipped: " + ex.getMessage());
+                    }
+                }
+            }
+        }
         return products;
     }
 
     @Override
-    synchronized public void delete(@NotNull final int id) {
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.DELETE.QUERY)) {
+    public void delete(@NotNull final int id) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.DELETE.QUERY);
             statement.setInt(1, id);
-            statement.executeQuery().next();
-        } catch (SQLException ex) {
-            System.out.println(ex.getMessage());
+            statement.executeUpdate();
         }
     }
 
     @Override
-    synchronized public void update(@NotNull final Product product) {
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.UPDATE.QUERY)) {
-            statement.setInt(1, product.getId());
-            statement.setString(2, product.getName());
-            statement.executeQuery();
-        } catch (SQLException ex) {
-            logger.info(ex.getMessage());
+    public void update(@NotNull final Product product) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.UPDATE.QUERY);
+            bind(statement, product);
+            statement.setInt(16, product.getId());
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes the products with one batch.
+     * @param ids - the ids of products
+     * @throws SQLException if the database is not available
+     */
+
+    public void delete(@NotNull final Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.DELETE.QUERY);
+            for (int id : ids) {
+                statement.setInt(1, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Takes a block of ids from the sequence of products.
+     * @param count - the number of ids
+     * @return the ids in ascending order
+     * @throws SQLException if the database is not available
+     */
+
+    int[] nextIds(int count) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.NEXT_IDS.QUERY);
+            statement.setInt(1, count);
+            int[] ids = new int[count];
+            int size = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next() && size < count) {
+                    ids[size++] = rs.getInt(1);
+                }
+            }
+            Arrays.sort(ids, 0, size);
+            return size == count ? ids : Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Writes the operations in one transaction. Neighbouring operations of one kind go with one JDBC batch,
+     * so the order of operations is kept.
+     * @param operations - the operations in order of their execution in memory
+     * @throws SQLException if the transaction was rolled back
+     */
+
+    void write(@NotNull final List<WriteBehindQueue.Operation> operations) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            Connection jdbc = connection.getConnection();
+            jdbc.setAutoCommit(false);
+            try {
+                int from = 0;
+                while (from < operations.size()) {
+                    WriteBehindQueue.Operation.Type type = operations.get(from).getType();
+                    PreparedStatement statement = connection.prepare(type == WriteBehindQueue.Operation.Type.INSERT
+                            ? sqlQueries.INSERT_WITH_ID.QUERY
+                            : type == WriteBehindQueue.Operation.Type.UPDATE ? sqlQueries.UPDATE.QUERY : sqlQueries.DELETE.QUERY);
+                    int to = from;
+                    while (to < operations.size() && operations.get(to).getType() == type) {
+                        WriteBehindQueue.Operation operation = operations.get(to++);
+                        if (type == WriteBehindQueue.Operation.Type.DELETE) {
+                            statement.setInt(1, operation.getId());
+                        } else {
+                            bind(statement, operation.getProduct());
+                            statement.setInt(16, operation.getId());
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    from = to;
+                }
+                jdbc.commit();
+            } catch (SQLException ex) {
+                connection.markBroken(ex);
+                try {
+                    jdbc.rollback();
+                } catch (SQLException ignored) {
+                }
+                throw ex;
+            } finally {
+                try {
+                    jdbc.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    connection.markBroken(ex);
+                }
+            }
         }
     }
 
     enum sqlQueries {
         INSERT("INSERT INTO products (id, name, coordinate_x, coordinate_y, creation_date, price, part_number, unit_of_measure, person_name, person_height, person_eyeColor, location_name, location_x, location_y, location_z, creator) VALUES (DEFAULT, (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?)) RETURNING id"),
         GET("SELECT p.id, p.name, p.coordinate_x, p.coordinate_y, p.creation_date, p.price, p.part_number, p.unit_of_measure, p.person_name, p.person_height, p.person_eyeColor, p.location_name, p.location_x, p.location_y, p.location_z, host FROM products"),
-        UPDATE("UPDATE products SET id = (?) WHERE name = (?)"),
+        INSERT_WITH_ID("INSERT INTO products (name, coordinate_x, coordinate_y, creation_date, price, part_number, unit_of_measure, person_name, person_height, person_eyeColor, location_name, location_x, location_y, location_z, creator, id) VALUES ((?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?), (?)) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, coordinate_x = EXCLUDED.coordinate_x, coordinate_y = EXCLUDED.coordinate_y, creation_date = EXCLUDED.creation_date, price = EXCLUDED.price, part_number = EXCLUDED.part_number, unit_of_measure = EXCLUDED.unit_of_measure, person_name = EXCLUDED.person_name, person_height = EXCLUDED.person_height, person_eyeColor = EXCLUDED.person_eyeColor, location_name = EXCLUDED.location_name, location_x = EXCLUDED.location_x, location_y = EXCLUDED.location_y, location_z = EXCLUDED.location_z, creator = EXCLUDED.creator"),
+        UPDATE("UPDATE products SET name = (?), coordinate_x = (?), coordinate_y = (?), creation_date = (?), price = (?), part_number = (?), unit_of_measure = (?), person_name = (?), person_height = (?), person_eyeColor = (?), location_name = (?), location_x = (?), location_y = (?), location_z = (?), creator = (?) WHERE id = (?)"),
+        NEXT_IDS("SELECT nextval('products_id_seq') FROM generate_series(1, (?))"),
         DELETE("DELETE FROM products WHERE id = (?)"),
-        GET_ALL("SELECT * FROM products");
+        GET_PAGE("SELECT id, name, coordinate_x, coordinate_y, creation_date, price, part_number, unit_of_measure, person_name, person_height, person_eyeColor, location_name, location_x, location_y, location_z, creator FROM products WHERE id > (?) ORDER BY id LIMIT (?)");
 
         String QUERY;
 
@@ -0,0 +1,71 @@
+package src.database;
+
+import src.elements.Product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Interface of storage engine of users and products.
+ * DBManager sends every call here, so the server works the same with PostgreSQL (JdbcStorage),
+ * in memory (InMemoryStorage) or with a local append-only file (LogStorage).
+ * The engine is chosen by db.storage: jdbc, memory or log.
+ * Creations return -1 when nothing was saved, other changes throw StorageException.
+ */
+
+public interface Storage {
+
+    /**
+     * Adds a user.
+     * @param login - the login
+     * @param pass - the hash of password
+     * @return the id of user or -1 if the user was not added
+     */
+
+    int createUser(String login, String pass);
+
+    /**
+     * Tells whether the user with this login and password exists.
+     */
+
+    boolean checkUser(String login, String pass);
+
+    /**
+     * Reads the user.
+     * @return the user, its id is -1 if there is no such user
+     */
+
+    User readUser(String login);
+
+    void updateUser(User user);
+
+    void deleteUser(int id);
+
+    /**
+     * Adds a product.
+     * @return the id given to the product or -1 if the product was not added
+     */
+
+    int createProduct(Product product);
+
+    Product readProduct(String name);
+
+    /**
+     * Reads the products with ids greater than the given one by pages.
+     * @param afterId - the id after which products are read
+     * @param consumer - takes the pages in order of ids
+     * @return the number of products read
+     * @throws StorageException if the products can not be read
+     */
+
+    int readProducts(int afterId, Consumer<List<Product>> consumer);
+
+    void updateProduct(Product product);
+
+    void deleteProduct(int id);
+
+    void deleteProducts(Collection<Integer> ids);
+
+    void close();
+}
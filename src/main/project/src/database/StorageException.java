@@ -0,0 +1,29 @@
+package src.database;
+
+/**
+ * Class of exception of storage.
+ * Thrown when a change could not be saved, the change is not made and the client must be told about it,
+ * or when the products could not be read.
+ */
+
+public class StorageException extends RuntimeException {
+
+    /**
+     * Constructor
+     * @param message - the description of problem
+     */
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor
+     * @param message - the description of problem
+     * @param cause - the exception which has caused it
+     */
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,18 +1,15 @@
 package src.database;
 
 import com.sun.istack.internal.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import src.server.Server;
 
 import java.io.Serializable;
 
 public class User implements Serializable {
 
-    private static final Logger logger = LoggerFactory.getLogger(Server.class);
     private int id;
     private String login;
     private String password;
+    private String token;
 
     public User() {}
 
@@ -33,18 +30,28 @@ public class User implements Serializable {
         this.password = password;
     }
 
+    /**
+     * Sets the token of session which the server gave after the login.
+     * @param token - the token
+     */
+
+    public void setToken(final String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
     public String getLogin() {
-        logger.info("getLogin");
         return login;
     }
 
     public String getPassword() {
-        logger.info("getPassword");
         return password;
     }
 
     public int getId() {
-        logger.info("getId");
         return id;
     }
 }
@@ -5,7 +5,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import src.server.Server;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -13,31 +12,32 @@ import java.sql.SQLException;
 public class UserDAO implements DAO <User, String> {
 
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
-    private Connection connection;
+    private ConnectionPool pool;
 
-    UserDAO(final Connection connection) {
-        this.connection = connection;
+    UserDAO(final ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
-    synchronized public int create(@NotNull final User user) {
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.INSERT.QUERY)) {
-        statement.setString(1, user.getLogin());
-        statement.setString(2, user.getPassword());
-        statement.executeQuery();
-        final ResultSet rs = statement.executeQuery();
-        if (rs.next()) {
-            return rs.getInt(1);
-        }
-        return -1;
+    public int create(@NotNull final User user) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.INSERT.QUERY);
+            statement.setString(1, user.getLogin());
+            statement.setString(2, user.getPassword());
+            final ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+            return -1;
         } catch (SQLException ex) {
             System.out.println(ex.getMessage());
             return -1;
         }
     }
 
-    synchronized public int create(@NotNull final String login, @NotNull final String pass) {
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.INSERT.QUERY)) {
+    public int create(@NotNull final String login, @NotNull final String pass) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.INSERT.QUERY);
             statement.setString(1, login);
             statement.setString(2, pass);
             final ResultSet rs = statement.executeQuery();
@@ -52,11 +52,12 @@ public class UserDAO implements DAO <User, String> {
     }
 
     @Override
-    synchronized public User read(@NotNull final String login) {
+    public User read(@NotNull final String login) {
         User user = new User();
         user.setId(-1);
 
-        try(PreparedStatement statement = connection.prepareStatement(sqlQueries.GET.QUERY)) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.GET.QUERY);
             statement.setString(1, login);
             final ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -72,8 +73,9 @@ public class UserDAO implements DAO <User, String> {
     }
 
     @Override
-    synchronized public void update(@NotNull final User user) {
-        try(PreparedStatement statement = connection.prepareStatement(sqlQueries.UPDATE.QUERY)) {
+    public void update(@NotNull final User user) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.UPDATE.QUERY);
             statement.setString(1, user.getPassword());
             statement.setInt(2, user.getId());
             statement.executeQuery().next();
@@ -83,8 +85,9 @@ public class UserDAO implements DAO <User, String> {
     }
 
     @Override
-    synchronized public void delete(@NotNull final int id) {
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.DELETE.QUERY)) {
+    public void delete(@NotNull final int id) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.DELETE.QUERY);
             statement.setInt(1, id);
             statement.executeQuery().next();
         } catch (SQLException ex) {
@@ -92,9 +95,9 @@ public class UserDAO implements DAO <User, String> {
         }
     }
 
-    synchronized public boolean isAvailable(@NotNull final String login, @NotNull final String pass) {
-        logger.info("isAvailable");
-        try (PreparedStatement statement = connection.prepareStatement(sqlQueries.GET.QUERY)) {
+    public boolean isAvailable(@NotNull final String login, @NotNull final String pass) {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(sqlQueries.GET.QUERY);
             statement.setString(1, login);
             statement.setString(2, pass);
             final ResultSet rs = statement.executeQuery();
@@ -0,0 +1,528 @@
+package src.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.logic.BinaryWriter;
+import src.metrics.Metrics;
+import src.server.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Class of write-ahead log.
+ * Appends records to a file with group commit: callers put their records into the queue and one writer thread
+ * writes everything queued with one call and forces it to the disk once for the whole group.
+ * How long a caller waits is set by the sync policy:
+ * ALWAYS - until the record is on the disk, nothing acknowledged is lost;
+ * INTERVAL - until the record is written to the file, the file is forced every interval,
+ * so a crash of the process loses nothing and a crash of the machine loses at most the last interval;
+ * NEVER - until the record is written to the file, the system decides when it reaches the disk.
+ * A record is its length, its CRC32 and the bytes, a record cut by a crash does not match its checksum.
+ * All work with the file is done on the writer thread, the lock is not a monitor,
+ * so a virtual thread waiting for the disk does not hold its carrier thread.
+ */
+
+public class WriteAheadLog implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final int MAGIC = 0x504C4F47;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Policies of forcing the file to the disk.
+     */
+
+    public enum Sync {
+        ALWAYS,
+        INTERVAL,
+        NEVER;
+
+        /**
+         * Reads the policy: always, never or the interval in milliseconds.
+         * true and false are taken as always and never.
+         */
+
+        public static Sync parse(String value) {
+            if (value.equals("always") || value.equals("true")) {
+                return ALWAYS;
+            }
+            if (value.equals("never") || value.equals("false")) {
+                return NEVER;
+            }
+            Long.parseLong(value);
+            return INTERVAL;
+        }
+    }
+
+    /**
+     * Interface of handler of records read from a file.
+     */
+
+    public interface RecordHandler {
+        void accept(ByteBuffer record) throws IOException;
+    }
+
+    private final Sync sync;
+    private final long intervalNanos;
+    private final ReentrantLock lock;
+    private final Condition work;
+    private final Condition done;
+    private final ArrayList<ByteBuffer> pending;
+    private final CRC32 crc;
+    private final Thread writer;
+    private FileChannel channel;
+    private Path path;
+    private Path next;
+    private long appended;
+    private long written;
+    private long synced;
+    private volatile long size;
+    private IOException failure;
+    private boolean running;
+
+    /**
+     * Constructor, opens the file for appending after its valid records and starts the writer thread.
+     * @param path - the path of file, it is created if there is none
+     * @param validLength - the length of valid part of file returned by read, the rest is cut off
+     * @param sync - the sync policy
+     * @param intervalMs - the interval of forcing for the INTERVAL policy
+     * @throws IOException if the file can not be opened
+     */
+
+    public WriteAheadLog(Path path, long validLength, Sync sync, long intervalMs) throws IOException {
+        this.sync = sync;
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMs));
+        lock = new ReentrantLock();
+        work = lock.newCondition();
+        done = lock.newCondition();
+        pending = new ArrayList<>();
+        crc = new CRC32();
+        this.path = path;
+        channel = open(path, validLength);
+        running = true;
+        writer = new Thread(this, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private FileChannel open(Path path, long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (validLength < HEADER_SIZE) {
+                channel.truncate(0);
+                write(channel, header());
+                channel.force(true);
+            } else {
+                if (channel.size() > validLength) {
+                    logger.warn("The log {} has a broken tail of {} bytes, it is cut off.", path,
+                            channel.size() - validLength);
+                    channel.truncate(validLength);
+                }
+                channel.position(validLength);
+            }
+            size = channel.position();
+            return channel;
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put((byte) FORMAT).flip();
+        return header;
+    }
+
+    /**
+     * Makes a record of the bytes prepared in writer.
+     */
+
+    private static ByteBuffer frame(BinaryWriter writer, CRC32 crc) {
+        int length = writer.size();
+        byte[] payload = writer.toByteArray();
+        crc.reset();
+        crc.update(payload, 0, length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the path of file of the given generation: path.1, path.2, ...
+     * @param path - the path the files are named after
+     * @param generation - the number of file
+     */
+
+    public static Path segment(Path path, long generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * Returns the generations of files named after the path in order of writing.
+     * @param path - the path the files are named after
+     * @throws IOException if the directory can not be read
+     */
+
+    public static List<Long> generations(Path path) throws IOException {
+        String prefix = path.getFileName() + ".";
+        ArrayList<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    generations.add(Long.parseLong(name.substring(prefix.length())));
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Reads the records of file in order.
+     * @param path - the path of file
+     * @param handler - takes every valid record
+     * @return the length of valid part of file, the records after it are broken
+     * @throws IOException if the file can not be read, has an unknown format or the handler fails
+     */
+
+    public static long read(Path path, RecordHandler handler) throws IOException {
+        long size = Files.size(path);
+        if (size < HEADER_SIZE) {
+            return 0;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The log " + path + " is too large.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.get() != FORMAT) {
+            throw new IOException("The log " + path + " has an unknown format.");
+        }
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            handler.accept(record);
+            buffer.position(buffer.position() + length);
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Class of writer of a whole file of records, for example a snapshot. Writes to a temporary file
+     * and puts it in place on commit, so the file is either the old one or complete.
+     */
+
+    public static class SnapshotWriter implements AutoCloseable {
+
+        private final Path path;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+        private boolean committed;
+
+        /**
+         * Constructor
+         * @param path - the path of file
+         */
+
+        public SnapshotWriter(Path path) throws IOException {
+            this.path = path;
+            temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            buffer = ByteBuffer.allocate(1 << 16);
+            crc = new CRC32();
+            buffer.put(header());
+        }
+
+        /**
+         * Writes the record prepared in writer.
+         */
+
+        public void append(BinaryWriter writer) throws IOException {
+            ByteBuffer record = frame(writer, crc);
+            if (record.remaining() > buffer.remaining()) {
+                flush();
+            }
+            if (record.remaining() > buffer.remaining()) {
+                write(channel, record);
+            } else {
+                buffer.put(record);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            write(channel, buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Forces the records to the disk and puts the file in place of the old one.
+         */
+
+        public void commit() throws IOException {
+            flush();
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Appends the record prepared in writer and waits as long as the sync policy says.
+     * Records are written in order of calls.
+     * @return false if the record was not written
+     */
+
+    public boolean append(BinaryWriter writer) {
+        return await(enqueue(writer));
+    }
+
+    /**
+     * Queues the record prepared in writer without waiting, so the caller can release its locks first.
+     * @return the number of record for await or -1 if the log is broken
+     */
+
+    public long enqueue(BinaryWriter writer) {
+        lock.lock();
+        try {
+            if (failure != null || !running) {
+                return -1;
+            }
+            pending.add(frame(writer, crc));
+            work.signal();
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record is written or forced to the disk, as the sync policy says.
+     * @param sequence - the number of record returned by enqueue
+     * @return false if the record was not written
+     */
+
+    public boolean await(long sequence) {
+        if (sequence < 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            while ((sync == Sync.ALWAYS ? synced : written) < sequence && failure == null) {
+                done.awaitUninterruptibly();
+            }
+            return (sync == Sync.ALWAYS ? synced : written) >= sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the queued records, forces the file and continues in a new file.
+     * @param next - the path of new file
+     * @return false if the log is broken
+     */
+
+    public boolean roll(Path next) {
+        lock.lock();
+        try {
+            if (failure != null || !running) {
+                return false;
+            }
+            this.next = next;
+            work.signal();
+            while (this.next != null && failure == null) {
+                done.awaitUninterruptibly();
+            }
+            return failure == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        ArrayList<ByteBuffer> batch = new ArrayList<>();
+        long lastForce = System.nanoTime();
+        while (true) {
+            long target;
+            long wasSynced;
+            Path roll;
+            boolean stop;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && next == null && running && !forceDue(written, synced, lastForce)) {
+                    if (sync == Sync.INTERVAL && synced < written) {
+                        work.awaitNanos(lastForce + intervalNanos - System.nanoTime());
+                    } else {
+                        work.await();
+                    }
+                }
+                batch.addAll(pending);
+                pending.clear();
+                target = appended;
+                wasSynced = synced;
+                roll = next;
+                stop = !running;
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean forced = false;
+            IOException error = null;
+            try {
+                if (!batch.isEmpty()) {
+                    ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                    long bytes = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        bytes += buffer.remaining();
+                    }
+                    for (long left = bytes; left > 0; ) {
+                        left -= channel.write(buffers);
+                    }
+                    size += bytes;
+                }
+                long now = System.nanoTime();
+                if (target > wasSynced && (sync == Sync.ALWAYS || roll != null || stop
+                        || now - lastForce >= intervalNanos && sync == Sync.INTERVAL)) {
+                    channel.force(false);
+                    Metrics.shared.database("log.force", System.nanoTime() - now);
+                    lastForce = System.nanoTime();
+                    forced = true;
+                }
+                if (roll != null) {
+                    FileChannel old = channel;
+                    channel = open(roll, 0);
+                    old.close();
+                    path = roll;
+                }
+            } catch (IOException ex) {
+                logger.error("Unable to write to the log {}: {}", path, ex.getMessage());
+                error = ex;
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    written = target;
+                    if (forced) {
+                        synced = target;
+                    }
+                    if (roll != null) {
+                        next = null;
+                    }
+                }
+                done.signalAll();
+                if (stop || error != null) {
+                    closeQuietly();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean forceDue(long written, long synced, long lastForce) {
+        return sync == Sync.INTERVAL && synced < written && System.nanoTime() - lastForce >= intervalNanos;
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.warn("Unable to close the log {}: {}", path, ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the current file.
+     */
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Writes and forces the queued records and closes the file.
+     */
+
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package src.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.elements.Product;
+import src.logic.BinaryCodec;
+import src.logic.BinaryReader;
+import src.logic.BinaryWriter;
+import src.metrics.Metrics;
+import src.server.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Class of write-behind queue.
+ * Changes of collection are applied to memory at once and put here, a background flusher writes them
+ * to the database with JDBC batches. A batch is sent when it has batchSize operations
+ * or when lingerMs have passed since its first operation.
+ * A failed batch is retried, the queue is written out completely before close.
+ * Every change is first appended to the journal (a write-ahead log next to the server, db.writeBehindLog),
+ * so the changes which have not reached the database survive a crash and are written again at the next start.
+ * When the queue is empty and the journal has grown over db.writeBehindLogBytes, it goes on in a new file
+ * and the old ones are removed. A change which can not be written even alone is lost: it is counted,
+ * logged and reported to the failure listener, so the clients are told.
+ */
+
+public class WriteBehindQueue implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final int MAX_RETRIES = 5;
+    private static final long RETRY_DELAY = 1000;
+
+    private final ProductDAO productDAO;
+    private final LinkedBlockingQueue<Operation> queue;
+    private final int batchSize;
+    private final long lingerMs;
+    private final Thread flusher;
+    private final AtomicLong enqueued;
+    private final AtomicLong written;
+    private final AtomicLong batches;
+    private final AtomicLong lost;
+    private final ReentrantLock lock;
+    private final Path journalPath;
+    private final WriteAheadLog journal;
+    private final BinaryCodec codec;
+    private final BinaryWriter writer;
+    private final long rollBytes;
+    private long generation;
+    private volatile Consumer<String> failureListener;
+    private volatile boolean running;
+
+    /**
+     * Constructor, writes the changes left in the journal by the last run to the database before it returns,
+     * so the products read after it are up to date.
+     * @param productDAO - the dao writing the batches
+     * @param batchSize - the max number of operations in one batch
+     * @param lingerMs - the time to wait for more operations before a batch is sent
+     * @param journalPath - the path of journal, its files are named after it
+     * @param sync - the sync policy of journal, the same as db.logSync
+     * @throws IOException if the journal can not be read or opened
+     */
+
+    WriteBehindQueue(ProductDAO productDAO, int batchSize, long lingerMs, Path journalPath, String sync)
+            throws IOException {
+        this.productDAO = productDAO;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = Math.max(0, lingerMs);
+        this.journalPath = journalPath.toAbsolutePath();
+        queue = new LinkedBlockingQueue<>();
+        enqueued = new AtomicLong();
+        written = new AtomicLong();
+        batches = new AtomicLong();
+        lost = new AtomicLong();
+        lock = new ReentrantLock();
+        codec = new BinaryCodec();
+        writer = new BinaryWriter();
+        rollBytes = Long.getLong("db.writeBehindLogBytes", 1 << 20);
+
+        List<Long> generations = WriteAheadLog.generations(this.journalPath);
+        ArrayList<Operation> recovered = new ArrayList<>();
+        for (long number : generations) {
+            WriteAheadLog.read(WriteAheadLog.segment(this.journalPath, number), record -> recover(record, recovered));
+        }
+        if (!recovered.isEmpty()) {
+            logger.warn("{} changes from the journal {} are written to data base again.", recovered.size(), this.journalPath);
+            enqueued.addAndGet(recovered.size());
+            try {
+                for (int from = 0; from < recovered.size(); from += this.batchSize) {
+                    flush(new ArrayList<>(recovered.subList(from, Math.min(recovered.size(), from + this.batchSize))));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Writing of the journal " + this.journalPath + " was interrupted.");
+            }
+        }
+        generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+        WriteAheadLog.Sync policy = WriteAheadLog.Sync.parse(sync);
+        journal = new WriteAheadLog(WriteAheadLog.segment(this.journalPath, generation), 0, policy,
+                policy == WriteAheadLog.Sync.INTERVAL ? Long.parseLong(sync) : 0);
+        if (lost.get() == 0) {
+            removeJournal(generation);
+        }
+
+        running = true;
+        flusher = new Thread(this, "write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Reads a record of journal: an insert or an update with the product, or deletes of several products.
+     */
+
+    private void recover(ByteBuffer record, List<Operation> recovered) throws IOException {
+        BinaryReader reader = new BinaryReader(record);
+        Operation.Type type = Operation.Type.values()[reader.readByte()];
+        if (type == Operation.Type.DELETE) {
+            for (int i = reader.readCount(); i > 0; i--) {
+                recovered.add(new Operation(type, reader.readVarInt(), null));
+            }
+            return;
+        }
+        int id = reader.readVarInt();
+        recovered.add(new Operation(type, id, codec.readProduct(reader)));
+    }
+
+    /**
+     * Sets the listener which is told about changes lost on the way to the database.
+     * @param failureListener - takes the description of lost change
+     */
+
+    public void setFailureListener(Consumer<String> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    void insert(int id, Product product) {
+        add(Collections.singletonList(new Operation(Operation.Type.INSERT, id, product)));
+    }
+
+    void update(Product product) {
+        add(Collections.singletonList(new Operation(Operation.Type.UPDATE, product.getId(), product)));
+    }
+
+    void delete(int id) {
+        delete(Collections.singletonList(id));
+    }
+
+    /**
+     * Removes several products with one record of journal, so they wait for the disk once.
+     * @param ids - the ids of products
+     */
+
+    void delete(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ArrayList<Operation> operations = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            operations.add(new Operation(Operation.Type.DELETE, id, null));
+        }
+        add(operations);
+    }
+
+    /**
+     * Appends the operations to the journal as one record and queues them.
+     * The journal and the queue get operations in one order.
+     * @param operations - one insert or update, or deletes
+     * @throws StorageException if the journal is broken or closed, the operations are not queued then,
+     * or if the journal has failed before they reached the disk
+     */
+
+    private void add(List<Operation> operations) {
+        long sequence;
+        lock.lock();
+        try {
+            Operation first = operations.get(0);
+            writer.reset();
+            writer.writeByte(first.getType().ordinal());
+            if (first.getType() == Operation.Type.DELETE) {
+                writer.writeVarInt(operations.size());
+                for (Operation operation : operations) {
+                    writer.writeVarInt(operation.getId());
+                }
+            } else {
+                writer.writeVarInt(first.getId());
+                codec.writeProduct(writer, first.getProduct());
+            }
+            sequence = journal.enqueue(writer);
+            if (sequence == -1) {
+                throw new StorageException("The change was not saved: the journal " + journalPath + " is broken or closed.");
+            }
+            enqueued.addAndGet(operations.size());
+            queue.addAll(operations);
+        } finally {
+            lock.unlock();
+        }
+        if (!journal.await(sequence)) {
+            throw new StorageException("The change may be lost: the journal " + journalPath + " has failed.");
+        }
+    }
+
+    @Override
+    public void run() {
+        ArrayList<Operation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Operation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || left <= 0 || !running) {
+                        break;
+                    }
+                    Operation next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+                rollIfDrained();
+            } catch (InterruptedException ex) {
+                if (!running) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void flush(ArrayList<Operation> batch) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+            try {
+                long start = System.nanoTime();
+                productDAO.write(batch);
+                Metrics.shared.database("products.writeBatch", System.nanoTime() - start);
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return;
+            } catch (SQLException ex) {
+                logger.warn("Unable to write {} changes to data base: {}", batch.size(), ex.getMessage());
+                if (attempt < MAX_RETRIES) {
+                    Thread.sleep(RETRY_DELAY * attempt);
+                }
+            }
+        }
+        // the batch keeps failing, so one of operations is broken: write them one by one and skip the broken ones
+        for (Operation operation : batch) {
+            try {
+                productDAO.write(Collections.singletonList(operation));
+                written.incrementAndGet();
+            } catch (SQLException ex) {
+                lost.incrementAndGet();
+                logger.error("Change {} of product {} was not written: {}", operation.getType(), operation.getId(), ex.getMessage());
+                Consumer<String> listener = failureListener;
+                if (listener != null) {
+                    listener.accept("The change (" + operation.getType().name().toLowerCase() + ") of product "
+                            + operation.getId() + " was not saved to data base.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a new file of journal and removes the old ones when every journaled operation has left the queue.
+     * The lock keeps new operations out while it is checked.
+     */
+
+    private void rollIfDrained() {
+        if (journal.getSize() < rollBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!queue.isEmpty() || !isDrained()) {
+                return;
+            }
+            if (!journal.roll(WriteAheadLog.segment(journalPath, generation + 1))) {
+                return;
+            }
+            generation++;
+            removeJournal(generation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeJournal(long before) {
+        try {
+            for (long old : WriteAheadLog.generations(journalPath)) {
+                if (old < before) {
+                    Files.deleteIfExists(WriteAheadLog.segment(journalPath, old));
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("Unable to remove the old journal {}: {}", journalPath, ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the rest of the queue, stops the flusher and closes the journal.
+     * The journal is removed if everything has reached the database.
+     */
+
+    void close() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        if (queue.isEmpty() && isDrained()) {
+            removeJournal(generation + 1);
+        }
+    }
+
+    /**
+     * Returns the number of operations waiting for the database.
+     */
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Checks if no queued operation is waiting for the database: each one was written or was lost.
+     * Lost operations are counted by getLost.
+     */
+
+    public boolean isDrained() {
+        return written.get() + lost.get() == enqueued.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * Class of change waiting for the database.
+     */
+
+    static class Operation {
+
+        enum Type {
+            INSERT,
+            UPDATE,
+            DELETE
+        }
+
+        private final Type type;
+        private final int id;
+        private final Product product;
+
+        Operation(Type type, int id, Product product) {
+            this.type = type;
+            this.id = id;
+            this.product = product;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        Product getProduct() {
+            return product;
+        }
+    }
+}
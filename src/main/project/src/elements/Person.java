@@ -83,6 +83,13 @@ public class Person implements Comparable<Person>, Serializable {
         }
     }
 
+    public void setEyeColor(Color color) throws NullPointerException {
+        if (color == null) {
+            throw new NullPointerException("The color of eyes can not be empty!");
+        }
+        eyeColor = color;
+    }
+
     public void setLocation(Location location) throws NullPointerException {
         if(location == null) {
             throw new NullPointerException("The location can not be empty!");
@@ -148,6 +148,13 @@ public class Product implements Comparable<Product>, Serializable {
         }
     }
 
+    public void setUnitOfMeasure(UnitOfMeasure unitOfMeasure) throws NullPointerException {
+        if(unitOfMeasure == null) {
+            throw new NullPointerException("The unit of measure can not be null!");
+        }
+        this.unitOfMeasure = unitOfMeasure;
+    }
+
     public void setOwner(Person owner) throws NullPointerException {
         if(owner == null) {
             throw new NullPointerException("Null Equals Exception: 'The variable owner is null!'");
@@ -0,0 +1,559 @@
+package src.logic;
+
+import src.commands.Command;
+import src.commands.Commands;
+import src.database.User;
+import src.elements.Color;
+import src.elements.Coordinates;
+import src.elements.Location;
+import src.elements.Person;
+import src.elements.Product;
+import src.elements.UnitOfMeasure;
+
+import javax.xml.bind.ValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class of the binary codec.
+ * Knows the layout of packets and elements, so it writes only values: commands as numbers from the command table,
+ * enums as ordinals, numbers as varints and repeated strings as references.
+ * Values of unknown types are written with java serialization.
+ */
+
+public class BinaryCodec implements Codec {
+
+    public static final byte ID = 1;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int PRODUCT = 4;
+    private static final int PRODUCT_LIST = 5;
+    private static final int STRING_ARRAY = 6;
+    private static final int CHANGE_LIST = 7;
+    private static final int DOUBLE = 8;
+    private static final int QUERY = 9;
+    private static final int PAGE = 10;
+    private static final int CHUNK = 11;
+    private static final int SERIALIZED = 127;
+
+    private static final int HAS_COORDINATES = 1;
+    private static final int HAS_OWNER = 2;
+    private static final int HAS_LOCATION = 4;
+    private static final int HAS_COLOR = 8;
+    private static final int HAS_CREATION_DATE = 16;
+
+    private static final int SUCCESSFUL = 1;
+    private static final int MESSAGE = 2;
+
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final ServerPacket.Kind[] KINDS = ServerPacket.Kind.values();
+    private static final ChangeEvent.Type[] CHANGE_TYPES = ChangeEvent.Type.values();
+    private static final Query.Field[] FIELDS = Query.Field.values();
+
+    private final ThreadLocal<BinaryWriter> writers = ThreadLocal.withInitial(BinaryWriter::new);
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public ByteBuffer encode(Packet packet) throws IOException {
+        BinaryWriter writer = writers.get();
+        writer.reset();
+        writer.reserveHeader();
+
+        int id = packet.getCommand() == null ? -1 : Commands.idOf(packet.getCommand());
+        if (packet.getCommand() != null && id == -1) {
+            throw new IOException("Command " + packet.getCommand().getClass().getName() + " is not in the command table.");
+        }
+        writer.writeSignedVarInt(id);
+        writer.writeVarLong(packet.getRequestId());
+        writeUser(writer, packet.getUser());
+        writeValue(writer, packet.getArgument());
+        return writer.toFrame();
+    }
+
+    @Override
+    public Packet decodePacket(ByteBuffer payload) throws IOException {
+        BinaryReader reader = new BinaryReader(payload);
+        int id = reader.readSignedVarInt();
+        Command command = null;
+        if (id != -1) {
+            command = Commands.byId(id);
+            if (command == null) {
+                throw new IOException("Unknown command " + id + ".");
+            }
+        }
+        long requestId = reader.readVarLong();
+        User user = readUser(reader);
+        Object argument = readValue(reader);
+        Packet packet = new Packet(command, user, argument);
+        packet.setRequestId(requestId);
+        return packet;
+    }
+
+    @Override
+    public ByteBuffer encode(ServerPacket packet) throws IOException {
+        BinaryWriter writer = writers.get();
+        writer.reset();
+        writer.reserveHeader();
+
+        int flags = 0;
+        if (packet.getIsSuccessful()) {
+            flags |= SUCCESSFUL;
+        }
+        if (packet.getIsMessage()) {
+            flags |= MESSAGE;
+        }
+        writer.writeVarLong(packet.getRequestId());
+        writer.writeByte(flags);
+        writer.writeByte(packet.getKind().ordinal());
+        writer.writeVarLong(packet.getVersion());
+        writer.writeString(packet.getMessage());
+        writeValue(writer, packet.getObject());
+        return writer.toFrame();
+    }
+
+    @Override
+    public ServerPacket decodeServerPacket(ByteBuffer payload) throws IOException {
+        BinaryReader reader = new BinaryReader(payload);
+        long requestId = reader.readVarLong();
+        int flags = reader.readByte();
+        int kind = reader.readByte();
+        if (kind < 0 || kind >= KINDS.length) {
+            throw new IOException("Unknown kind of answer " + kind + ".");
+        }
+        long version = reader.readVarLong();
+        String message = reader.readString();
+        Object object = readValue(reader);
+        ServerPacket packet = new ServerPacket(KINDS[kind], object, message, (flags & SUCCESSFUL) != 0, version);
+        packet.setRequestId(requestId);
+        return packet;
+    }
+
+    /**
+     * The request id goes first in an answer, so another id is put by replacing the head of frame.
+     */
+
+    @Override
+    public ByteBuffer[] readdress(ByteBuffer frame, long requestId) {
+        int start = frame.position();
+        if (frame.remaining() <= FrameDecoder.HEADER_SIZE || frame.get(start + FrameDecoder.HEADER_SIZE) != 0) {
+            return null;
+        }
+        BinaryWriter writer = writers.get();
+        writer.reset();
+        writer.reserveHeader();
+        writer.writeVarLong(requestId);
+        int length = frame.getInt(start) - 1 + writer.size() - FrameDecoder.HEADER_SIZE;
+        ByteBuffer head = writer.toFrame();
+        head.putInt(0, length);
+        ByteBuffer body = frame.duplicate();
+        body.position(start + FrameDecoder.HEADER_SIZE + 1);
+        return new ByteBuffer[] {head, body};
+    }
+
+    private void writeUser(BinaryWriter writer, User user) {
+        if (user == null) {
+            writer.writeByte(0);
+            return;
+        }
+        writer.writeByte(1);
+        writer.writeSignedVarInt(user.getId());
+        writer.writeString(user.getLogin());
+        writer.writeString(user.getPassword());
+        writer.writeString(user.getToken());
+    }
+
+    private User readUser(BinaryReader reader) throws IOException {
+        if (reader.readByte() == 0) {
+            return null;
+        }
+        User user = new User();
+        user.setId(reader.readSignedVarInt());
+        user.setLogin(reader.readString());
+        user.setPassword(reader.readString());
+        user.setToken(reader.readString());
+        return user;
+    }
+
+    private void writeValue(BinaryWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.writeByte(NULL);
+        } else if (value instanceof String) {
+            writer.writeByte(STRING);
+            writer.writeString((String) value);
+        } else if (value instanceof Integer) {
+            writer.writeByte(INTEGER);
+            writer.writeSignedVarInt((Integer) value);
+        } else if (value instanceof Long) {
+            writer.writeByte(LONG);
+            writer.writeSignedVarLong((Long) value);
+        } else if (value instanceof Double) {
+            writer.writeByte(DOUBLE);
+            writer.writeDouble((Double) value);
+        } else if (value instanceof Query) {
+            writer.writeByte(QUERY);
+            writeQuery(writer, (Query) value);
+        } else if (value instanceof Page) {
+            Page page = (Page) value;
+            writer.writeByte(PAGE);
+            writer.writeVarInt(page.getOffset());
+            writer.writeVarInt(page.getTotal());
+            writer.writeVarInt(page.getProducts().size());
+            for (Product product : page.getProducts()) {
+                writeProduct(writer, product);
+            }
+        } else if (value instanceof Chunk) {
+            Chunk chunk = (Chunk) value;
+            writer.writeByte(CHUNK);
+            writer.writeVarInt(chunk.getSequence());
+            writer.writeByte(chunk.isLast() ? 1 : 0);
+            writer.writeVarInt(chunk.getProducts().size());
+            for (Product product : chunk.getProducts()) {
+                writeProduct(writer, product);
+            }
+        } else if (value instanceof Product) {
+            writer.writeByte(PRODUCT);
+            writeProduct(writer, (Product) value);
+        } else if (value instanceof String[]) {
+            String[] strings = (String[]) value;
+            writer.writeByte(STRING_ARRAY);
+            writer.writeVarInt(strings.length);
+            for (String s : strings) {
+                writer.writeString(s);
+            }
+        } else if (isProductList(value)) {
+            List<?> products = (List<?>) value;
+            writer.writeByte(PRODUCT_LIST);
+            writer.writeVarInt(products.size());
+            for (Object product : products) {
+                writeProduct(writer, (Product) product);
+            }
+        } else if (isChangeList(value)) {
+            List<?> changes = (List<?>) value;
+            writer.writeByte(CHANGE_LIST);
+            writer.writeVarInt(changes.size());
+            for (Object change : changes) {
+                writeChange(writer, (ChangeEvent) change);
+            }
+        } else {
+            byte[] bytes = serialize(value);
+            writer.writeByte(SERIALIZED);
+            writer.writeVarInt(bytes.length);
+            writer.writeBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    private Object readValue(BinaryReader reader) throws IOException {
+        int tag = reader.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return reader.readString();
+            case INTEGER:
+                return reader.readSignedVarInt();
+            case LONG:
+                return reader.readSignedVarLong();
+            case DOUBLE:
+                return reader.readDouble();
+            case QUERY:
+                return readQuery(reader);
+            case PAGE:
+                int offset = reader.readVarInt();
+                int total = reader.readVarInt();
+                int length = reader.readCount();
+                ArrayList<Product> page = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    page.add(readProduct(reader));
+                }
+                return new Page(page, offset, total);
+            case CHUNK:
+                int sequence = reader.readVarInt();
+                boolean last = reader.readByte() != 0;
+                int number = reader.readCount();
+                ArrayList<Product> chunk = new ArrayList<>(number);
+                for (int i = 0; i < number; i++) {
+                    chunk.add(readProduct(reader));
+                }
+                return new Chunk(chunk, sequence, last);
+            case PRODUCT:
+                return readProduct(reader);
+            case STRING_ARRAY:
+                String[] strings = new String[reader.readCount()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = reader.readString();
+                }
+                return strings;
+            case PRODUCT_LIST:
+                int size = reader.readCount();
+                ArrayList<Product> products = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    products.add(readProduct(reader));
+                }
+                return products;
+            case CHANGE_LIST:
+                int count = reader.readCount();
+                ArrayList<ChangeEvent> changes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    changes.add(readChange(reader));
+                }
+                return changes;
+            case SERIALIZED:
+                return deserialize(reader.readBytes(reader.readCount()));
+            default:
+                throw new IOException("Unknown value type " + tag + ".");
+        }
+    }
+
+    private boolean isProductList(Object value) {
+        if (!(value instanceof List)) {
+            return false;
+        }
+        for (Object element : (List<?>) value) {
+            if (!(element instanceof Product)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isChangeList(Object value) {
+        if (!(value instanceof List)) {
+            return false;
+        }
+        for (Object element : (List<?>) value) {
+            if (!(element instanceof ChangeEvent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeQuery(BinaryWriter writer, Query query) throws IOException {
+        writer.writeVarInt(query.getConditions().size());
+        for (Query.Condition condition : query.getConditions()) {
+            writer.writeByte(condition.getField().ordinal());
+            writeValue(writer, condition.getMin());
+            writeValue(writer, condition.getMax());
+        }
+        writer.writeByte(query.getSort() == null ? -1 : query.getSort().ordinal());
+        writer.writeByte(query.isDescending() ? 1 : 0);
+        writer.writeVarInt(query.getOffset());
+        writer.writeVarInt(query.getLimit());
+    }
+
+    private Query readQuery(BinaryReader reader) throws IOException {
+        Query query = new Query();
+        int count = reader.readCount();
+        for (int i = 0; i < count; i++) {
+            Query.Field field = readField(reader);
+            Object min = readValue(reader);
+            Object max = readValue(reader);
+            if (!(min == null || min instanceof Comparable) || !(max == null || max instanceof Comparable)) {
+                throw new IOException("Bad condition on field " + field + ".");
+            }
+            query.addCondition(new Query.Condition(field, (Comparable<?>) min, (Comparable<?>) max));
+        }
+        int sort = reader.readByte();
+        Query.Field field = sort == -1 ? null : readField(sort);
+        query.setSort(field, reader.readByte() != 0);
+        query.setOffset(reader.readVarInt());
+        query.setLimit(reader.readVarInt());
+        return query;
+    }
+
+    private Query.Field readField(BinaryReader reader) throws IOException {
+        return readField(reader.readByte());
+    }
+
+    private Query.Field readField(int field) throws IOException {
+        if (field < 0 || field >= FIELDS.length) {
+            throw new IOException("Unknown field " + field + ".");
+        }
+        return FIELDS[field];
+    }
+
+    private void writeChange(BinaryWriter writer, ChangeEvent change) {
+        writer.writeByte(change.getType().ordinal());
+        writer.writeVarLong(change.getVersion());
+        writer.writeSignedVarInt(change.getProductId());
+        if (change.getProduct() == null) {
+            writer.writeByte(0);
+        } else {
+            writer.writeByte(1);
+            writeProduct(writer, change.getProduct());
+        }
+    }
+
+    private ChangeEvent readChange(BinaryReader reader) throws IOException {
+        int type = reader.readByte();
+        if (type < 0 || type >= CHANGE_TYPES.length) {
+            throw new IOException("Unknown type of change " + type + ".");
+        }
+        long version = reader.readVarLong();
+        int productId = reader.readSignedVarInt();
+        Product product = reader.readByte() == 0 ? null : readProduct(reader);
+        return new ChangeEvent(CHANGE_TYPES[type], version, productId, product);
+    }
+
+    /**
+     * Writes the product without a type tag, for other formats built on the writer.
+     */
+
+    public void writeProduct(BinaryWriter writer, Product product) {
+        Coordinates coordinates = product.getCoordinates();
+        Person owner = product.getOwner();
+        Location location = owner == null ? null : owner.getLocation();
+
+        int flags = 0;
+        if (coordinates != null) {
+            flags |= HAS_COORDINATES;
+        }
+        if (owner != null) {
+            flags |= HAS_OWNER;
+        }
+        if (location != null) {
+            flags |= HAS_LOCATION;
+        }
+        if (product.getColor() != null) {
+            flags |= HAS_COLOR;
+        }
+        if (product.getCreationDate() != null) {
+            flags |= HAS_CREATION_DATE;
+        }
+        writer.writeByte(flags);
+
+        writer.writeSignedVarInt(product.getId());
+        writer.writeString(product.getName());
+        if (coordinates != null) {
+            writer.writeFloat(coordinates.getX());
+            writer.writeDouble(coordinates.getY());
+        }
+        if (product.getCreationDate() != null) {
+            writer.writeSignedVarLong(product.getCreationDate().toEpochDay());
+        }
+        writer.writeSignedVarLong(product.getPrice() == null ? 0 : product.getPrice());
+        writer.writeString(product.getPartNumber());
+        writer.writeByte(product.getUnitOfMeasure() == null ? -1 : product.getUnitOfMeasure().ordinal());
+        if (owner != null) {
+            writer.writeString(owner.getName());
+            writer.writeSignedVarInt(owner.getHeight() == null ? 0 : owner.getHeight());
+            writer.writeByte(owner.getEyeColor() == null ? -1 : owner.getEyeColor().ordinal());
+        }
+        if (location != null) {
+            writer.writeSignedVarLong(location.getX());
+            writer.writeSignedVarLong(location.getY());
+            writer.writeSignedVarInt(location.getZ());
+            writer.writeString(location.getName());
+        }
+        writer.writeString(product.getHost());
+        if (product.getColor() != null) {
+            writer.writeInt(product.getColor().getRGB());
+        }
+    }
+
+    /**
+     * Reads a product written by writeProduct.
+     * @throws IOException if the product is broken
+     */
+
+    public Product readProduct(BinaryReader reader) throws IOException {
+        int flags = reader.readByte();
+        Product product = new Product();
+        try {
+            product.setId(reader.readSignedVarInt());
+            String name = reader.readString();
+            if (name != null) {
+                product.setName(name);
+            }
+            if ((flags & HAS_COORDINATES) != 0) {
+                Coordinates coordinates = new Coordinates();
+                coordinates.setX(reader.readFloat());
+                coordinates.setY(reader.readDouble());
+                product.setCoordinates(coordinates);
+            }
+            if ((flags & HAS_CREATION_DATE) != 0) {
+                product.setCreationDate(LocalDate.ofEpochDay(reader.readSignedVarLong()));
+            }
+            long price = reader.readSignedVarLong();
+            if (price > 0) {
+                product.setPrice(price);
+            }
+            String partNumber = reader.readString();
+            if (partNumber != null) {
+                product.setPartNumber(partNumber);
+            }
+            int unit = reader.readByte();
+            if (unit >= 0 && unit < UNITS.length) {
+                product.setUnitOfMeasure(UNITS[unit]);
+            }
+            if ((flags & HAS_OWNER) != 0) {
+                Person owner = new Person();
+                owner.setName(reader.readString());
+                owner.setHeight(reader.readSignedVarInt());
+                int color = reader.readByte();
+                if (color >= 0 && color < COLORS.length) {
+                    owner.setEyeColor(COLORS[color]);
+                }
+                if ((flags & HAS_LOCATION) != 0) {
+                    Location location = new Location();
+                    location.setX(reader.readSignedVarLong());
+                    location.setY(reader.readSignedVarLong());
+                    location.setZ(reader.readSignedVarInt());
+                    String locationName = reader.readString();
+                    if (locationName != null) {
+                        location.setName(locationName);
+                    }
+                    owner.setLocation(location);
+                }
+                product.setOwner(owner);
+            }
+            String host = reader.readString();
+            if (host != null) {
+                product.setHost(host);
+            }
+            if ((flags & HAS_COLOR) != 0) {
+                product.setColor(new java.awt.Color(reader.readInt(), true));
+            }
+        } catch (ValidationException | NullPointerException ex) {
+            throw new IOException("Broken product: " + ex.getMessage());
+        }
+        return product;
+    }
+
+    private byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+        objectOutputStream.writeObject(value);
+        objectOutputStream.flush();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException {
+        try {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return input.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+}
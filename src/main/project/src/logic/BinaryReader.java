@@ -0,0 +1,133 @@
+package src.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Class of binary reader.
+ * Reads messages written by BinaryWriter.
+ */
+
+public class BinaryReader {
+
+    private final ByteBuffer buffer;
+    private final ArrayList<String> strings;
+
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        strings = new ArrayList<>();
+    }
+
+    public int readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    /**
+     * Reads the number of elements which follow. Every element takes at least one byte,
+     * so a broken count can not make the reader allocate more than the message holds.
+     */
+
+    public int readCount() throws IOException {
+        int count = readVarInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Malformed count of elements.");
+        }
+        return count;
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        int tag = readVarInt();
+        if (tag == 0) {
+            return null;
+        }
+        if (tag > 1) {
+            if (tag - 2 >= strings.size()) {
+                throw new IOException("Reference to unknown string.");
+            }
+            return strings.get(tag - 2);
+        }
+        int length = readVarInt();
+        require(length);
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            value = new String(readBytes(length), StandardCharsets.UTF_8);
+        }
+        strings.add(value);
+        return value;
+    }
+
+    public byte[] readBytes(int length) throws IOException {
+        require(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    private void require(int count) throws IOException {
+        if (count < 0 || buffer.remaining() < count) {
+            throw new IOException("Unexpected end of message.");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package src.logic;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Class of binary writer.
+ * Writes numbers as varints and keeps a table of written strings, so a repeated string
+ * (a host, a name of location) costs one or two bytes. The writer is reused after reset.
+ */
+
+public class BinaryWriter {
+
+    private final int INITIAL_SIZE = 256;
+
+    private byte[] bytes;
+    private int position;
+    private final HashMap<String, Integer> strings;
+
+    public BinaryWriter() {
+        bytes = new byte[INITIAL_SIZE];
+        strings = new HashMap<>();
+    }
+
+    /**
+     * Prepares the writer for the next message.
+     */
+
+    public void reset() {
+        position = 0;
+        strings.clear();
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        bytes[position++] = (byte) value;
+    }
+
+    public void writeInt(int value) {
+        ensure(4);
+        bytes[position++] = (byte) (value >>> 24);
+        bytes[position++] = (byte) (value >>> 16);
+        bytes[position++] = (byte) (value >>> 8);
+        bytes[position++] = (byte) value;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes a non-negative number in 1-5 bytes.
+     */
+
+    public void writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative number in 1-10 bytes.
+     */
+
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a number which can be negative, small absolute values take less bytes.
+     */
+
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a string. 0 means null, 1 means a new string, n > 1 refers to the (n - 2)th written string.
+     */
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(1);
+        writeVarInt(utf.length);
+        writeBytes(utf, 0, utf.length);
+    }
+
+    public void writeBytes(byte[] source, int offset, int length) {
+        ensure(length);
+        System.arraycopy(source, offset, bytes, position, length);
+        position += length;
+    }
+
+    /**
+     * Reserves place for a frame header which is filled by toFrame.
+     */
+
+    public void reserveHeader() {
+        ensure(FrameDecoder.HEADER_SIZE);
+        position += FrameDecoder.HEADER_SIZE;
+    }
+
+    /**
+     * Copies the written message to a new frame. The writer must start with reserveHeader.
+     * @return the frame ready for writing
+     */
+
+    public ByteBuffer toFrame() {
+        int length = position - FrameDecoder.HEADER_SIZE;
+        byte[] frame = Arrays.copyOf(bytes, position);
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return ByteBuffer.wrap(frame);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, position);
+    }
+
+    public int size() {
+        return position;
+    }
+
+    private void ensure(int count) {
+        if (position + count > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + count));
+        }
+    }
+}
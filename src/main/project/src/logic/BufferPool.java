@@ -0,0 +1,98 @@
+package src.logic;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class of buffer pool.
+ * Keeps released buffers grouped by power of two capacities, so readers can grow their buffers
+ * without allocating a new one for every read.
+ * Only buffers up to 256 KB are kept and all of them together take at most 16 MB,
+ * larger frames are rare and their buffers are left to the garbage collector.
+ */
+
+public class BufferPool {
+
+    public static final BufferPool shared = new BufferPool();
+
+    private final int MIN_SHIFT = 12;
+    private final int MAX_SHIFT = 18;
+    private final int MAX_BUFFERS_PER_CLASS = 64;
+    private final long MAX_POOLED_BYTES = 16L << 20;
+
+    private final List<Queue<ByteBuffer>> classes;
+    private final AtomicLong pooledBytes;
+
+    public BufferPool() {
+        classes = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+        for (int shift = MIN_SHIFT; shift <= MAX_SHIFT; shift++) {
+            classes.add(new ConcurrentLinkedQueue<>());
+        }
+        pooledBytes = new AtomicLong();
+    }
+
+    /**
+     * Returns a cleared buffer which can hold at least the given number of bytes.
+     * @param capacity - the required capacity
+     * @return the buffer
+     */
+
+    public ByteBuffer acquire(int capacity) {
+        int index = classIndex(capacity);
+        if (index >= classes.size()) {
+            return ByteBuffer.allocate(capacity);
+        }
+        ByteBuffer buffer = classes.get(index).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(1 << (index + MIN_SHIFT));
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. The buffer must not be used after that.
+     * @param buffer - the buffer got from acquire
+     */
+
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+        if (index < 0 || index >= classes.size() || classes.get(index).size() >= MAX_BUFFERS_PER_CLASS) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > MAX_POOLED_BYTES) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        classes.get(index).add(buffer);
+    }
+
+    /**
+     * Copies the content of the buffer to a bigger one and releases the old buffer.
+     * @param buffer - the buffer in write mode
+     * @param capacity - the required capacity
+     * @return the new buffer in write mode
+     */
+
+    public ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = acquire(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        release(buffer);
+        return grown;
+    }
+
+    private int classIndex(int capacity) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+}
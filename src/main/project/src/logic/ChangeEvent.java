@@ -0,0 +1,55 @@
+package src.logic;
+
+import src.elements.Product;
+
+import java.io.Serializable;
+
+/**
+ * Class of change of collection.
+ * Every change gets the next version of collection, so a client can tell if it missed some of them.
+ */
+
+public class ChangeEvent implements Serializable {
+
+    public enum Type {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    private final Type type;
+    private final long version;
+    private final int productId;
+    private final Product product;
+
+    /**
+     * Constructor
+     * @param type - the type of change
+     * @param version - the version of collection after the change
+     * @param productId - the id of changed product
+     * @param product - the new state of product, null for removal
+     */
+
+    public ChangeEvent(Type type, long version, int productId, Product product) {
+        this.type = type;
+        this.version = version;
+        this.productId = productId;
+        this.product = product;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+}
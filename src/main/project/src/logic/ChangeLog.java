@@ -0,0 +1,61 @@
+package src.logic;
+
+import src.elements.Product;
+
+import java.util.ArrayList;
+
+/**
+ * Class of log of recent changes.
+ * Keeps the last changes of collection in a ring, so clients which are slightly behind get only what they missed.
+ */
+
+public class ChangeLog {
+
+    private final ChangeEvent[] events;
+    private long version;
+
+    /**
+     * Constructor
+     * @param capacity - the number of changes to keep
+     */
+
+    public ChangeLog(int capacity) {
+        events = new ChangeEvent[capacity];
+        version = 0;
+    }
+
+    /**
+     * Records a change and assigns the next version to it.
+     * @param type - the type of change
+     * @param productId - the id of changed product
+     * @param product - the new state of product, null for removal
+     * @return the recorded change
+     */
+
+    synchronized public ChangeEvent append(ChangeEvent.Type type, int productId, Product product) {
+        ChangeEvent event = new ChangeEvent(type, ++version, productId, product);
+        events[(int) (version % events.length)] = event;
+        return event;
+    }
+
+    synchronized public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the changes made after the given version.
+     * @param from - the version the client has
+     * @return the changes in order or null if some of them are not kept anymore
+     */
+
+    synchronized public ArrayList<ChangeEvent> since(long from) {
+        if (from > version || version - from > events.length) {
+            return null;
+        }
+        ArrayList<ChangeEvent> result = new ArrayList<>((int) (version - from));
+        for (long v = from + 1; v <= version; v++) {
+            result.add(events[(int) (v % events.length)]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package src.logic;
+
+import src.elements.Product;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Class of chunk of streamed collection.
+ * A large collection is sent as a row of chunks with growing sequence numbers, the last one is marked.
+ */
+
+public class Chunk implements Serializable {
+
+    private final List<Product> products;
+    private final int sequence;
+    private final boolean last;
+
+    /**
+     * Constructor
+     * @param products - the products of chunk in order of id
+     * @param sequence - the number of chunk in the stream, starting from 0
+     * @param last - true if no chunks follow
+     */
+
+    public Chunk(List<Product> products, int sequence, boolean last) {
+        this.products = products;
+        this.sequence = sequence;
+        this.last = last;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+}
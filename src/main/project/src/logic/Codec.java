@@ -0,0 +1,33 @@
+package src.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface of the wire format of packets.
+ * Encoders return complete frames, decoders get the payload of one frame.
+ */
+
+public interface Codec {
+
+    byte getId();
+
+    String getName();
+
+    ByteBuffer encode(Packet packet) throws IOException;
+
+    Packet decodePacket(ByteBuffer payload) throws IOException;
+
+    ByteBuffer encode(ServerPacket packet) throws IOException;
+
+    ServerPacket decodeServerPacket(ByteBuffer payload) throws IOException;
+
+    /**
+     * Makes the frame of answer with request id 0 an answer to the given request without copying the frame.
+     * @param frame - the encoded answer, it is not changed
+     * @param requestId - the number of request
+     * @return the buffers to write one after another or null if the format does not allow it
+     */
+
+    ByteBuffer[] readdress(ByteBuffer frame, long requestId);
+}
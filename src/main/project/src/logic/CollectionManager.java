@@ -3,8 +3,10 @@ package src.logic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import src.database.DBManager;
+import src.database.StorageException;
 import src.database.User;
 import src.elements.*;
+import src.metrics.Metrics;
 import src.server.Server;
 
 import javax.xml.bind.ValidationException;
@@ -14,12 +16,20 @@ import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Class which manages collection.
+ * Changes of one owner are ordered by a striped owner lock and wait for the database under it,
+ * the write lock is held only while the collection in memory is changed. add_if_max and add_if_min
+ * compare with the whole collection, so they hold the write lock from the check to the insert.
  */
 
 public class CollectionManager {
@@ -27,6 +37,7 @@ public class CollectionManager {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
     private TreeSet<Product> products;
+    private ProductIndex index;
     private HashMap<String, java.awt.Color> usersColors;
 
     private DBManager dbManager;
@@ -35,11 +46,16 @@ public class CollectionManager {
     private Scanner scanner;
 
     private boolean exit = false;
-    private boolean hasChanges = false;
 
     private ReadWriteLock lock;
+    private ReentrantLock[] ownerLocks;
+    private ChangeLog changeLog;
+    private AtomicReference<Snapshot> snapshot;
+    private List<Runnable> changeListeners;
 
     private final int MAX_COLOR_CODE = 255;
+    private final int CHANGE_LOG_SIZE = 1024;
+    private final int OWNER_STRIPES = 64;
 
     private static int freeId;
 
@@ -48,6 +64,17 @@ public class CollectionManager {
      */
 
     public CollectionManager(DBManager dbManager) {
+        this(dbManager, null);
+    }
+
+    /**
+     * Constructor
+     * @param dbManager - the manager of database
+     * @param snapshotFile - the file to start from, if it is clean only the products added after it
+     *                     are read from the database; can be null
+     */
+
+    public CollectionManager(DBManager dbManager, SnapshotFile snapshotFile) {
 
         products = new TreeSet<>();
         usersColors = new HashMap<>();
@@ -55,54 +82,121 @@ public class CollectionManager {
         history = new DefaultQueue(11);
         scanner = new Scanner(System.in);
         this.dbManager = dbManager;
-        products.addAll(dbManager.readAllProducts());
+        index = new ProductIndex();
+        List<Product> saved = snapshotFile == null ? null : snapshotFile.load();
+        int afterId = 0;
+        if (saved != null) {
+            for (Product product : saved) {
+                if (product.getColor() != null) {
+                    usersColors.putIfAbsent(product.getHost(), product.getColor());
+                }
+            }
+            load(saved);
+            afterId = snapshotFile.getHighWater();
+        }
+        dbManager.readAllProducts(afterId, this::load);
         defineUserColors();
         lock = new ReentrantReadWriteLock();
+        ownerLocks = new ReentrantLock[OWNER_STRIPES];
+        for (int i = 0; i < ownerLocks.length; i++) {
+            ownerLocks[i] = new ReentrantLock();
+        }
+        changeLog = new ChangeLog(CHANGE_LOG_SIZE);
+        snapshot = new AtomicReference<>();
+        changeListeners = new CopyOnWriteArrayList<>();
     }
 
     /**
      * Modifies history of used src.commands.
+     * Read-only commands run at the same time under the read lock, so the history has its own lock.
      * @param command - the next command
      */
 
     private void modifyHistory(String command)
     {
-        history.insert(command);
+        synchronized (history) {
+            history.insert(command);
+        }
     }
 
-    /**
-     * Finds a max price of src.elements in collection
-     * return the maximum value
-     */
+    private void load(List<Product> page) {
+        for (Product product : page) {
+            if (products.add(product)) {
+                index.add(product);
+            }
+        }
+    }
 
     private boolean isIdBusy(int id) {
-        if (!products.isEmpty()) {
-            return products.stream().anyMatch(p->p.getId() == id);
-        } else {
-            return false;
+        return index.contains(id);
+    }
+
+    private Product find(int id) {
+        acquire(lock.readLock(), "collection.read");
+        try {
+            return index.get(id);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
-    private Long findMax() {
-        Product max = products.stream()
-                .max(Comparator.comparing(Product::getPrice))
-                .get();
+    /**
+     * Returns the lock of the owner. Users change only their own products, so changes of different owners
+     * wait for the database at the same time and take the write lock only to change the collection in memory.
+     * @param host - the login of owner
+     */
+
+    private ReentrantLock ownerLock(String host) {
+        return ownerLocks[(host == null ? 0 : host.hashCode() & 0x7FFFFFFF) % ownerLocks.length];
+    }
+
+    /**
+     * Takes the lock and records the time spent waiting for it.
+     * @param lock - the lock
+     * @param name - the name of lock in metrics
+     */
 
-        return max.getPrice();
+    private static void acquire(Lock lock, String name) {
+        long start = System.nanoTime();
+        lock.lock();
+        Metrics.shared.lockWait(name, System.nanoTime() - start);
+    }
+
+    /**
+     * Finds a max price of src.elements in collection
+     * @return the maximum value or null if the collection is empty
+     */
+
+    private Long findMax() {
+        return index.maxPrice();
     }
 
     /**
      * Finds a min price of src.elements in collection
-     * @return the minimal value
+     * @return the minimal value or null if the collection is empty
      */
 
-    private long findMin() {
-        PriceComparator comparator = new PriceComparator();
-        Product min = products.stream()
-                .min(Comparator.comparing(Product::getPrice))
-                .get();
+    private Long findMin() {
+        return index.minPrice();
+    }
 
-        return min.getPrice();
+    /**
+     * Writes the change to the log and drops the snapshot of previous version. Called under the write lock.
+     */
+
+    private void record(ChangeEvent.Type type, int id, Product product) {
+        changeLog.append(type, id, product);
+        snapshot.set(null);
+    }
+
+    private void insert(Product product) {
+        products.add(product);
+        index.add(product);
+    }
+
+    private void delete(Product product) {
+        products.remove(product);
+        index.remove(product.getId());
     }
 
     /**
@@ -126,21 +220,29 @@ public class CollectionManager {
     }
 
     public String add(Object object) {
-        lock.writeLock().lock();
         Product product = (Product) object;
-        modifyHistory("add");
-        int id = dbManager.createProduct(product);
-        if (id  != -1) {
-            product.setId(id);
-            products.add(product);
-            defineUserColors(product);
-            lock.writeLock().unlock();
-            hasChanges = true;
-            return "Product was successfully added to the collection.\n";
-        } else {
-            lock.writeLock().unlock();
-            return "There are some problems with adding a product to collection.\n";
+        ReentrantLock ownerLock = ownerLock(product.getHost());
+        acquire(ownerLock, "collection.owner");
+        try {
+            modifyHistory("add");
+            int id = dbManager.createProduct(product);
+            if (id == -1) {
+                return "There are some problems with adding a product to collection.\n";
+            }
+            acquire(lock.writeLock(), "collection.write");
+            try {
+                product.setId(id);
+                insert(product);
+                defineUserColors(product);
+                record(ChangeEvent.Type.ADD, id, product);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            ownerLock.unlock();
         }
+        fireChanges();
+        return "Product was successfully added to the collection.\n";
     }
 
     /**
@@ -149,25 +251,8 @@ public class CollectionManager {
      */
 
     public String addIfMax(Object object) {
-        lock.writeLock().lock();
-        Product product = (Product) object;
         modifyHistory("add_if_max");
-        if (product.getPrice() > findMax()) {
-            int id = dbManager.createProduct(product);
-            if (id != -1) {
-                products.add(product);
-                defineUserColors(product);
-                lock.writeLock().unlock();
-                hasChanges = true;
-                return "Product was successfully added to the collection.\n";
-            } else {
-                lock.writeLock().unlock();
-                return "There are some problems with adding a product to collection.\n";
-            }
-        } else {
-            lock.writeLock().unlock();
-            return "You are trying to add the product which isn't a max!\n";
-        }
+        return addIfExtreme((Product) object, true);
     }
 
     /**
@@ -175,24 +260,66 @@ public class CollectionManager {
      */
 
     public String addIfMin(Object object) {
-        lock.writeLock().lock();
-        Product product = (Product) object;
         modifyHistory("add_if_min");
-        if (product.getPrice() < findMin()) {
+        return addIfExtreme((Product) object, false);
+    }
+
+    private boolean isExtreme(Product product, boolean max) {
+        Long extreme = max ? findMax() : findMin();
+        return extreme == null || (max ? product.getPrice() > extreme : product.getPrice() < extreme);
+    }
+
+    /**
+     * Adds the product if its price is greater (less) than all prices in collection.
+     * The price is checked under the read lock and the product is written to the database under the owner lock only,
+     * then the price is checked again under the write lock. If another product has got ahead meanwhile,
+     * the written product is removed from the database.
+     * @return the answer for the client
+     */
+
+    private String addIfExtreme(Product product, boolean max) {
+        String notExtreme = "You are trying to add the product which isn't a " + (max ? "max" : "min") + "!\n";
+        acquire(lock.readLock(), "collection.read");
+        try {
+            if (!isExtreme(product, max)) {
+                return notExtreme;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ReentrantLock ownerLock = ownerLock(product.getHost());
+        acquire(ownerLock, "collection.owner");
+        try {
             int id = dbManager.createProduct(product);
-            if (id != -1) {
-                products.add(product);
-                defineUserColors(product);
-                hasChanges = true;
-                lock.writeLock().unlock();
-                return "Product was successfully added to the collection.\n";
-            } else {
-                lock.writeLock().unlock();
+            if (id == -1) {
                 return "There are some problems with adding a product to collection.\n";
             }
+            boolean added = false;
+            acquire(lock.writeLock(), "collection.write");
+            try {
+                if (isExtreme(product, max)) {
+                    product.setId(id);
+                    insert(product);
+                    defineUserColors(product);
+                    record(ChangeEvent.Type.ADD, id, product);
+                    added = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!added) {
+                try {
+                    dbManager.deleteProduct(id);
+                } catch (StorageException ex) {
+                    logger.error(ex.getMessage());
+                }
+                return notExtreme;
+            }
+        } finally {
+            ownerLock.unlock();
         }
-        lock.writeLock().unlock();
-        return "You are trying to add the product which isn't a min!\n";
+        fireChanges();
+        return "Product was successfully added to the collection.\n";
     }
 
     /**
@@ -200,26 +327,45 @@ public class CollectionManager {
      */
 
     public String clear(User user) {
-        lock.writeLock().lock();
-
-        ArrayList<Product> productsToRemove = new ArrayList<>();
-        for (Product p : products) {
-            if (p.getHost().equals(user.getLogin())) {
-                productsToRemove.add(p);
+        ReentrantLock ownerLock = ownerLock(user.getLogin());
+        acquire(ownerLock, "collection.owner");
+        try {
+            modifyHistory("clear");
+            ArrayList<Product> productsToRemove;
+            acquire(lock.readLock(), "collection.read");
+            try {
+                productsToRemove = new ArrayList<>(index.byHost(user.getLogin()));
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (productsToRemove.isEmpty()) {
+                return "The collection was cleared.\n";
+            }
 
+            ArrayList<Integer> ids = new ArrayList<>(productsToRemove.size());
+            for (Product p : productsToRemove) {
+                ids.add(p.getId());
+            }
+            try {
+                dbManager.deleteProducts(ids);
+            } catch (StorageException ex) {
+                logger.error(ex.getMessage());
+                return "There are some problems with clearing the collection.\n";
             }
-        }
 
-        for (Product p : productsToRemove) {
-            if (products.contains(p)) {
-                products.remove(p);
-                dbManager.deleteProduct(p.getId());
+            acquire(lock.writeLock(), "collection.write");
+            try {
+                for (Product p : productsToRemove) {
+                    delete(p);
+                    record(ChangeEvent.Type.REMOVE, p.getId(), null);
+                }
+            } finally {
+                lock.writeLock().unlock();
             }
+        } finally {
+            ownerLock.unlock();
         }
-
-        hasChanges = true;
-        modifyHistory("clear");
-        lock.writeLock().unlock();
+        fireChanges();
         return "The collection was cleared.\n";
     }
 
@@ -228,7 +374,7 @@ public class CollectionManager {
      */
 
     public String executeScript() {
-        lock.writeLock().lock();
+        acquire(lock.writeLock(), "collection.write");
         modifyHistory("execute_script");
         lock.writeLock().unlock();
         return "A new script was started to execute\n";
@@ -239,23 +385,110 @@ public class CollectionManager {
      */
 
     public String filterByUnitOfMeasure(Object object) {
-        lock.readLock().lock();
+        acquire(lock.readLock(), "collection.read");
         String unitOfMeasure = (String) object;
-        String result = "The result of filtering by unit of measure:\n";
+        StringBuilder result = new StringBuilder("The result of filtering by unit of measure:\n");
 
-        List<Product> res = products.stream()
-                .filter(Product -> unitOfMeasure.equals(Product.getUnitOfMeasure().getUnit()))
-                .collect(Collectors.toList());
-
-        for (Product p : res) {
-            result += p.getName() + "\n";
+        for (UnitOfMeasure unit : UnitOfMeasure.values()) {
+            if (unit.getUnit().equals(unitOfMeasure)) {
+                for (Product p : index.byUnit(unit)) {
+                    result.append(p.getName()).append("\n");
+                }
+            }
         }
 
-        lock.readLock().lock();
+        lock.readLock().unlock();
 
         modifyHistory("filter_by_unit_of_measure");
 
-        return result;
+        return result.toString();
+    }
+
+    /**
+     * Finds a page of products matching the query.
+     * The products are taken from the narrowest index the query allows. If the index is already in order
+     * of the query, the page is cut while going through it, otherwise only offset + limit best products are kept.
+     * @param query - the query
+     * @return the answer with the page
+     */
+
+    public ServerPacket query(Query query) {
+        modifyHistory("query");
+        acquire(lock.readLock(), "collection.read");
+        try {
+            Query.Field order = query.getSort() == null ? Query.Field.ID : query.getSort();
+            Query.Field orderedBy = Query.Field.ID;
+            boolean descending = false;
+            Iterable<Product> candidates = null;
+
+            Query.Condition id = query.equality(Query.Field.ID);
+            Query.Condition host = query.equality(Query.Field.HOST);
+            Query.Condition unit = query.equality(Query.Field.UNIT_OF_MEASURE);
+            Query.Condition price = query.condition(Query.Field.PRICE);
+            if (id != null) {
+                Product product = index.get(((Long) id.getMin()).intValue());
+                candidates = product == null ? Collections.emptyList() : Collections.singletonList(product);
+            } else if (host != null || unit != null) {
+                Collection<Product> byHost = host == null ? null : index.byHost((String) host.getMin());
+                Collection<Product> byUnit = unit == null ? null : productsOf((String) unit.getMin());
+                if (byUnit != null && (byHost == null || byUnit.size() <= byHost.size())) {
+                    candidates = byUnit;
+                } else {
+                    candidates = byHost;
+                    orderedBy = null;
+                }
+            } else if (price != null || order == Query.Field.PRICE) {
+                descending = order == Query.Field.PRICE && query.isDescending();
+                candidates = price == null ? index.byPrice(null, null, descending)
+                        : index.byPrice((Long) price.getMin(), (Long) price.getMax(), descending);
+                orderedBy = Query.Field.PRICE;
+            } else {
+                descending = query.isDescending();
+                candidates = descending ? products.descendingSet() : products;
+            }
+
+            int offset = query.getOffset();
+            int end = (int) Math.min((long) offset + query.getLimit(), Integer.MAX_VALUE);
+            int total = 0;
+            List<Product> page;
+            if (orderedBy == order && descending == query.isDescending()) {
+                page = new ArrayList<>();
+                for (Product product : candidates) {
+                    if (query.matches(product)) {
+                        if (total >= offset && total < end) {
+                            page.add(product);
+                        }
+                        total++;
+                    }
+                }
+            } else {
+                Comparator<Product> comparator = query.comparator();
+                PriorityQueue<Product> best = new PriorityQueue<>(comparator.reversed());
+                for (Product product : candidates) {
+                    if (query.matches(product)) {
+                        total++;
+                        best.add(product);
+                        if (best.size() > end) {
+                            best.poll();
+                        }
+                    }
+                }
+                page = new ArrayList<>(best);
+                page.sort(comparator);
+                page = offset >= page.size() ? new ArrayList<>() : new ArrayList<>(page.subList(offset, page.size()));
+            }
+            return ServerPacket.page(new Page(page, offset, total), changeLog.getVersion());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Collection<Product> productsOf(String unit) {
+        try {
+            return index.byUnit(UnitOfMeasure.valueOf(unit));
+        } catch (IllegalArgumentException ex) {
+            return Collections.emptyList();
+        }
     }
 
     /**
@@ -263,7 +496,6 @@ public class CollectionManager {
      */
 
     public String help() {
-        logger.info("help");
         modifyHistory("help");
         return "//// HELP //// " +
                 "\ninfo : вывести в стандартный поток вывода информацию о коллекции (тип, дата инициализации, количество элементов и т.д.)" +
@@ -280,7 +512,8 @@ public class CollectionManager {
                 "\nhistory : вывести последние 11 команд (без их аргументов)" +
                 "\nfilter_by_unit_of_measure unitOfMeasure : вывести элементы, значение поля unitOfMeasure которых равно заданному" +
                 "\nprint_unique_part_number partNumber : вывести уникальные значения поля partNumber" +
-                "\nprint_field_descending_owner owner : вывести значения поля owner в порядке убывания\n";
+                "\nprint_field_descending_owner owner : вывести значения поля owner в порядке убывания" +
+                "\nquery field=value field>=value field<=value sort=[-]field offset=n limit=n : вывести страницу элементов, подходящих под условия\n";
     }
 
     /**
@@ -288,10 +521,12 @@ public class CollectionManager {
      */
 
     public String history() {
-        lock.readLock().lock();
+        acquire(lock.readLock(), "collection.read");
         String result = "The history of your last used commands:\n";
-        for(int i = 0; i < history.getSize(); i++) {
-            result += history.getElement(i) + "\n";
+        synchronized (history) {
+            for(int i = 0; i < history.getSize(); i++) {
+                result += history.getElement(i) + "\n";
+            }
         }
         lock.readLock().unlock();
         modifyHistory("history");
@@ -303,7 +538,7 @@ public class CollectionManager {
      */
 
       public String info() {
-        lock.readLock().lock();
+        acquire(lock.readLock(), "collection.read");
         modifyHistory("info");
         try {
             Field treeSetField = CollectionManager.class.getDeclaredField("products");
@@ -326,7 +561,7 @@ public class CollectionManager {
      */
 
     public String printFieldDescendingOwner() {
-        lock.readLock().lock();
+        acquire(lock.readLock(), "collection.read");
         ArrayList<Person> ownersList = new ArrayList<>();
         String result = "The owners:\n";
 
@@ -351,44 +586,46 @@ public class CollectionManager {
      */
 
     public String removeById(User user, Object object) {
-        lock.writeLock().lock();
         Integer id = (Integer) object;
+        ReentrantLock ownerLock = ownerLock(user.getLogin());
+        acquire(ownerLock, "collection.owner");
+        try {
+            modifyHistory("remove_by_id");
 
-        modifyHistory("remove_by_id");
-
-        for (Product p : products) {
-            if (p.getId() == id) {
-                if (p.getHost().equals(user.getLogin())) {
-                    products.remove(p);
-                    dbManager.deleteProduct(id);
-                    hasChanges = true;
-                    lock.writeLock().unlock();
-                    return "Element was successfully removed.\n";
-                }
-                else {
-                    lock.writeLock().unlock();
-                    return "You don't have a permission to change this element!\n";
-                }
+            Product p = find(id);
+            if (p == null) {
+                return "The element with this id wasn't found.\n";
             }
+            if (!p.getHost().equals(user.getLogin())) {
+                return "You don't have a permission to change this element!\n";
+            }
+            try {
+                dbManager.deleteProduct(id);
+            } catch (StorageException ex) {
+                logger.error(ex.getMessage());
+                return "There are some problems with removing the element.\n";
+            }
+            acquire(lock.writeLock(), "collection.write");
+            try {
+                delete(p);
+                record(ChangeEvent.Type.REMOVE, id, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            ownerLock.unlock();
         }
-        lock.writeLock().unlock();
-        return "The element with this id wasn't found.\n";
+        fireChanges();
+        return "Element was successfully removed.\n";
     }
 
     /**
      * Shows collection in string presentation
      */
 
-    public ArrayList<Product> show() {
-        lock.readLock().lock();
-
-        if (!products.isEmpty()) {
-            ArrayList<Product> result = new ArrayList<>(products);
-            lock.readLock().unlock();
-            return result;
-        }
-        lock.readLock().unlock();
-        return null;
+    public List<Product> show() {
+        List<Product> result = getSnapshot().getProducts();
+        return result.isEmpty() ? null : result;
     }
 
     /**
@@ -396,7 +633,7 @@ public class CollectionManager {
      */
 
     public String printUniquePartNumber() {
-        lock.readLock().lock();
+        acquire(lock.readLock(), "collection.read");
         ArrayList<String> partNumbers = new ArrayList<>();
         String result = new String();
         for(Product product: products) {
@@ -418,35 +655,129 @@ public class CollectionManager {
      */
 
     public String updateId(User user, Object object) {
-        lock.writeLock().lock();
         Product product = (Product) object;
+        ReentrantLock ownerLock = ownerLock(user.getLogin());
+        acquire(ownerLock, "collection.owner");
+        try {
+            modifyHistory("update_id");
 
-        modifyHistory("update_id");
-
-        for (Product p : products) {
-            if (p.getId() == product.getId()) {
-                if (p.getHost().equals(user.getLogin())) {
-                    products.remove(p);
-                    products.add(product);
-                    dbManager.updateProduct(product);
-                    hasChanges = true;
-                    lock.writeLock().unlock();
-                    return "The element's id was successfully updated!\n";
-                }
-                lock.writeLock().unlock();
+            Product p = find(product.getId());
+            if (p == null) {
+                return "This id is busy.\n";
+            }
+            if (!p.getHost().equals(user.getLogin())) {
                 return "You don't have a permission to change this element!\n";
             }
+            try {
+                dbManager.updateProduct(product);
+            } catch (StorageException ex) {
+                logger.error(ex.getMessage());
+                return "There are some problems with updating the element.\n";
+            }
+            acquire(lock.writeLock(), "collection.write");
+            try {
+                delete(p);
+                insert(product);
+                defineUserColors(product);
+                record(ChangeEvent.Type.UPDATE, product.getId(), product);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            ownerLock.unlock();
         }
-        lock.writeLock().unlock();
-        return "This id is busy.\n";
+        fireChanges();
+        return "The element's id was successfully updated!\n";
+    }
+
+    /**
+     * Shows collection together with its version
+     */
 
+    public ServerPacket showSnapshot() {
+        return getSnapshot().toPacket();
     }
 
-    public boolean isChanged() {
-        return hasChanges;
+    /**
+     * Shows collection by chunks, so the client can show the first rows before the rest comes
+     * @param chunkSize - the number of products in one chunk
+     */
+
+    public ServerPacket showStream(int chunkSize) {
+        return getSnapshot().toStream(chunkSize);
+    }
+
+    /**
+     * Returns the snapshot of current version. Readers share one snapshot without locks,
+     * the first reader after a change makes the new one.
+     */
+
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        acquire(lock.readLock(), "collection.read");
+        try {
+            current = snapshot.get();
+            if (current == null) {
+                snapshot.compareAndSet(null, new Snapshot(products, changeLog.getVersion()));
+                current = snapshot.get();
+            }
+            return current;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public void handleChanges() {
-        hasChanges = false;
+    /**
+     * Runs the action while no change of collection is in progress: all owner locks and the write lock are held,
+     * so every change sent to the database before is already in memory.
+     * @param action - the action, it must not change the collection
+     * @return the result of action
+     */
+
+    public <T> T whileIdle(Supplier<T> action) {
+        for (ReentrantLock ownerLock : ownerLocks) {
+            ownerLock.lock();
+        }
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+            for (int i = ownerLocks.length - 1; i >= 0; i--) {
+                ownerLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the changes made after the given version
+     * @param version - the version the client has
+     * @return the changes or null if the client is too far behind
+     */
+
+    public ArrayList<ChangeEvent> changesSince(long version) {
+        return changeLog.since(version);
+    }
+
+    public long getVersion() {
+        return changeLog.getVersion();
+    }
+
+    /**
+     * Registers a listener which is called after every change of collection
+     * @param listener - the listener
+     */
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void fireChanges() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package src.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class of compressed frames.
+ * A compressed answer has the highest bit of its length set, then the request id as a varint,
+ * then the deflated payload of the answer encoded with request id 0.
+ * The request id stays outside the deflated part, so one compressed snapshot serves every request.
+ */
+
+public class Compression {
+
+    public static final int COMPRESSED = 0x80000000;
+
+    private Compression() {}
+
+    /**
+     * Deflates the payload of a frame.
+     * @param frame - the frame, its header is skipped
+     * @return the deflated payload
+     */
+
+    public static byte[] deflate(ByteBuffer frame) {
+        ByteBuffer payload = frame.duplicate();
+        payload.position(payload.position() + FrameDecoder.HEADER_SIZE);
+        byte[] input = new byte[payload.remaining()];
+        payload.get(input);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Creates the head of compressed frame: the length with the flag and the request id.
+     * @param bodyLength - the length of deflated payload
+     * @param requestId - the number of request
+     */
+
+    public static ByteBuffer head(int bodyLength, long requestId) {
+        byte[] id = new byte[10];
+        int size = 0;
+        long value = requestId;
+        while ((value & ~0x7FL) != 0) {
+            id[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        id[size++] = (byte) value;
+
+        ByteBuffer head = ByteBuffer.allocate(FrameDecoder.HEADER_SIZE + size);
+        head.putInt((size + bodyLength) | COMPRESSED);
+        head.put(id, 0, size);
+        head.flip();
+        return head;
+    }
+
+    /**
+     * Decodes a compressed answer.
+     * @param codec - the codec of connection
+     * @param payload - the payload of frame after the length
+     * @return the answer with its request id
+     * @throws IOException if the payload is broken
+     */
+
+    public static ServerPacket decode(Codec codec, ByteBuffer payload) throws IOException {
+        BinaryReader reader = new BinaryReader(payload);
+        long requestId = reader.readVarLong();
+        byte[] input = new byte[payload.remaining()];
+        payload.get(input);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] output = new byte[Math.max(1024, input.length * 4)];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == output.length) {
+                    if (output.length >= FrameDecoder.MAX_FRAME_SIZE) {
+                        throw new IOException("Compressed frame is too large.");
+                    }
+                    output = Arrays.copyOf(output, Math.min(output.length * 2, FrameDecoder.MAX_FRAME_SIZE));
+                }
+                int count = inflater.inflate(output, size, output.length - size);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Compressed frame is broken.");
+                }
+                size += count;
+            }
+            ServerPacket packet = codec.decodeServerPacket(ByteBuffer.wrap(output, 0, size));
+            return requestId == 0 ? packet : packet.answering(requestId);
+        } catch (DataFormatException ex) {
+            throw new IOException(ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package src.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Class of frame decoder.
+ * Every message on the wire is prefixed with its length (4 bytes, big endian).
+ * The decoder collects partial reads until a frame is complete and splits frames which came together.
+ */
+
+public class FrameDecoder {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private final int INITIAL_SIZE = 4096;
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    public FrameDecoder(BufferPool pool) {
+        this.pool = pool;
+        buffer = pool.acquire(INITIAL_SIZE);
+    }
+
+    /**
+     * Wraps the message into a frame.
+     * @param payload - the serialized message
+     * @return the frame ready for writing
+     */
+
+    public static ByteBuffer frame(byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads the available bytes from the channel.
+     * @param channel - the channel to read
+     * @return the number of read bytes or -1 if the channel was closed
+     * @throws IOException if the channel can not be read
+     */
+
+    public int read(ReadableByteChannel channel) throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer = pool.grow(buffer, buffer.capacity() * 2);
+        }
+        return channel.read(buffer);
+    }
+
+    /**
+     * Passes every complete frame to the handler. The frame is valid only while the handler runs.
+     * @param handler - the handler of frame payloads
+     * @throws IOException if the announced frame is bigger than allowed
+     */
+
+    public void decode(Consumer<ByteBuffer> handler) throws IOException {
+        buffer.flip();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Frame of " + length + " bytes can not be accepted.");
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                break;
+            }
+            ByteBuffer frame = buffer.duplicate();
+            frame.position(buffer.position() + HEADER_SIZE);
+            frame.limit(frame.position() + length);
+            buffer.position(frame.limit());
+            handler.accept(frame);
+        }
+        buffer.compact();
+
+        if (buffer.position() >= HEADER_SIZE) {
+            int length = buffer.getInt(0);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Frame of " + length + " bytes can not be accepted.");
+            }
+            if (HEADER_SIZE + length > buffer.capacity()) {
+                buffer = pool.grow(buffer, HEADER_SIZE + length);
+            }
+        } else if (buffer.position() == 0 && buffer.capacity() > INITIAL_SIZE) {
+            pool.release(buffer);
+            buffer = pool.acquire(INITIAL_SIZE);
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool.
+     */
+
+    public void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
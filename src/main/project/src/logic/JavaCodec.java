@@ -0,0 +1,83 @@
+package src.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Class of the java serialization codec.
+ * The original format of packets, left for clients which do not send a handshake.
+ */
+
+public class JavaCodec implements Codec {
+
+    public static final byte ID = 0;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "java";
+    }
+
+    @Override
+    public ByteBuffer encode(Packet packet) throws IOException {
+        return FrameDecoder.frame(serializeObject(packet));
+    }
+
+    @Override
+    public Packet decodePacket(ByteBuffer payload) throws IOException {
+        return (Packet) deserializeObject(payload);
+    }
+
+    @Override
+    public ByteBuffer encode(ServerPacket packet) throws IOException {
+        return FrameDecoder.frame(serializeObject(packet));
+    }
+
+    @Override
+    public ServerPacket decodeServerPacket(ByteBuffer payload) throws IOException {
+        return (ServerPacket) deserializeObject(payload);
+    }
+
+    @Override
+    public ByteBuffer[] readdress(ByteBuffer frame, long requestId) {
+        return null;
+    }
+
+    private byte[] serializeObject(Object object) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+
+        objectOutputStream.writeObject(object);
+        objectOutputStream.flush();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private Object deserializeObject(ByteBuffer payload) throws IOException {
+        byte[] bytes;
+        int offset;
+        if (payload.hasArray()) {
+            bytes = payload.array();
+            offset = payload.arrayOffset() + payload.position();
+        } else {
+            bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            offset = 0;
+        }
+        try {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, payload.remaining()));
+            return input.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+}
@@ -1,10 +1,7 @@
 package src.logic;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import src.commands.Command;
 import src.database.User;
-import src.server.Server;
 
 import javax.jws.soap.SOAPBinding;
 import java.io.Serializable;
@@ -13,7 +10,7 @@ public class Packet implements Serializable {
     private Command command;
     private User user;
     private Object argument;
-    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private long requestId;
 
     public Packet() {
         command = null;
@@ -39,16 +36,27 @@ public class Packet implements Serializable {
     }
 
     public Command getCommand() {
-        logger.info("getCommand"); return command;
+        return command;
     }
 
     public User getUser() {
-        logger.info("getUser");
         return user;
     }
 
+    /**
+     * Returns the number which the client gave the request, the answer carries the same number.
+     * 0 means the request is not numbered.
+     */
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public Object getArgument() {
-        logger.info("getArgs");
         return argument;
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package src.logic;
+
+import src.elements.Product;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Class of page of query result.
+ * Holds the products of the page and the number of all products matching the query.
+ */
+
+public class Page implements Serializable {
+
+    private final List<Product> products;
+    private final int offset;
+    private final int total;
+
+    /**
+     * Constructor
+     * @param products - the products of page in order of query
+     * @param offset - the position of the first product of page in the whole result
+     * @param total - the number of all matching products
+     */
+
+    public Page(List<Product> products, int offset, int total) {
+        this.products = products;
+        this.offset = offset;
+        this.total = total;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
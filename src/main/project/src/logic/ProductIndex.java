@@ -0,0 +1,165 @@
+package src.logic;
+
+import src.elements.Product;
+import src.elements.UnitOfMeasure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Class of indexes of collection.
+ * Finds a product by id, the max and min price, the products of a user and the products with a unit of measure
+ * without going through the whole collection. Changed together with the collection under its write lock,
+ * products must be replaced, not changed, while they are in the index.
+ */
+
+public class ProductIndex {
+
+    private final HashMap<Integer, Product> byId;
+    private final TreeMap<Long, TreeMap<Integer, Product>> byPrice;
+    private final HashMap<String, HashMap<Integer, Product>> byHost;
+    private final EnumMap<UnitOfMeasure, TreeMap<Integer, Product>> byUnit;
+
+    public ProductIndex() {
+        byId = new HashMap<>();
+        byPrice = new TreeMap<>();
+        byHost = new HashMap<>();
+        byUnit = new EnumMap<>(UnitOfMeasure.class);
+        for (UnitOfMeasure unit : UnitOfMeasure.values()) {
+            byUnit.put(unit, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Adds the product to all indexes, a product with the same id is replaced.
+     * @param product - the product with its final id
+     */
+
+    public void add(Product product) {
+        Product old = byId.put(product.getId(), product);
+        if (old != null) {
+            removeFromSecondary(old);
+        }
+        byPrice.computeIfAbsent(product.getPrice(), price -> new TreeMap<>()).put(product.getId(), product);
+        byHost.computeIfAbsent(product.getHost(), host -> new HashMap<>()).put(product.getId(), product);
+        byUnit.get(product.getUnitOfMeasure()).put(product.getId(), product);
+    }
+
+    /**
+     * Removes the product with the id from all indexes.
+     * @param id - the id of product
+     * @return the removed product or null if there was no such product
+     */
+
+    public Product remove(int id) {
+        Product product = byId.remove(id);
+        if (product != null) {
+            removeFromSecondary(product);
+        }
+        return product;
+    }
+
+    private void removeFromSecondary(Product product) {
+        TreeMap<Integer, Product> prices = byPrice.get(product.getPrice());
+        if (prices != null) {
+            prices.remove(product.getId());
+            if (prices.isEmpty()) {
+                byPrice.remove(product.getPrice());
+            }
+        }
+        HashMap<Integer, Product> products = byHost.get(product.getHost());
+        if (products != null) {
+            products.remove(product.getId());
+            if (products.isEmpty()) {
+                byHost.remove(product.getHost());
+            }
+        }
+        byUnit.get(product.getUnitOfMeasure()).remove(product.getId());
+    }
+
+    public Product get(int id) {
+        return byId.get(id);
+    }
+
+    public boolean contains(int id) {
+        return byId.containsKey(id);
+    }
+
+    /**
+     * Returns the max price or null if the collection is empty.
+     */
+
+    public Long maxPrice() {
+        return byPrice.isEmpty() ? null : byPrice.lastKey();
+    }
+
+    /**
+     * Returns the min price or null if the collection is empty.
+     */
+
+    public Long minPrice() {
+        return byPrice.isEmpty() ? null : byPrice.firstKey();
+    }
+
+    /**
+     * Returns the products with the price in the range in order of price, then id. The result is a view.
+     * @param min - the lowest price or null
+     * @param max - the highest price or null
+     * @param descending - true for the reverse order
+     */
+
+    public Iterable<Product> byPrice(Long min, Long max, boolean descending) {
+        NavigableMap<Long, TreeMap<Integer, Product>> range = byPrice;
+        if (min != null && max != null) {
+            if (min > max) {
+                return Collections.emptyList();
+            }
+            range = range.subMap(min, true, max, true);
+        } else if (min != null) {
+            range = range.tailMap(min, true);
+        } else if (max != null) {
+            range = range.headMap(max, true);
+        }
+        NavigableMap<Long, TreeMap<Integer, Product>> prices = descending ? range.descendingMap() : range;
+        return () -> prices.values().stream()
+                .flatMap(products -> (descending ? products.descendingMap() : products).values().stream())
+                .iterator();
+    }
+
+    /**
+     * Returns the products of the user. The result is a view, it must be copied before the collection is changed.
+     * @param host - the login of user
+     */
+
+    public Collection<Product> byHost(String host) {
+        Map<Integer, Product> products = byHost.get(host);
+        return products == null ? Collections.emptyList() : Collections.unmodifiableCollection(products.values());
+    }
+
+    /**
+     * Returns the products with the unit of measure in order of id. The result is a view.
+     * @param unit - the unit of measure
+     */
+
+    public Collection<Product> byUnit(UnitOfMeasure unit) {
+        return Collections.unmodifiableCollection(byUnit.get(unit).values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public void clear() {
+        byId.clear();
+        byPrice.clear();
+        byHost.clear();
+        for (TreeMap<Integer, Product> products : byUnit.values()) {
+            products.clear();
+        }
+    }
+}
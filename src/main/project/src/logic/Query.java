@@ -0,0 +1,405 @@
+package src.logic;
+
+import src.elements.Product;
+import src.exceptions.BadValue;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class of query.
+ * Describes which products the client wants to see: conditions on fields, the sort key and the page.
+ * Values are kept as Long, Double or String, so dates are epoch days and enums are names.
+ */
+
+public class Query implements Serializable {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 10000;
+
+    /**
+     * The fields of product a query can use, in order of columns of the table.
+     */
+
+    public enum Field {
+        ID, NAME, X, Y, CREATION_DATE, PRICE, PART_NUMBER, UNIT_OF_MEASURE, OWNER_NAME, OWNER_HEIGHT, EYE_COLOR,
+        LOCATION_NAME, LOCATION_X, LOCATION_Y, LOCATION_Z, HOST;
+
+        /**
+         * Returns the value of the field.
+         * @param product - the product
+         * @return the value or null if the product has no such field
+         */
+
+        public Comparable<?> of(Product product) {
+            switch (this) {
+                case ID: return (long) product.getId();
+                case NAME: return product.getName();
+                case X: return product.getCoordinates() == null ? null : toDouble(product.getCoordinates().getX());
+                case Y: return product.getCoordinates() == null ? null : product.getCoordinates().getY();
+                case CREATION_DATE: return toDay(product.getCreationDate());
+                case PRICE: return product.getPrice();
+                case PART_NUMBER: return product.getPartNumber();
+                case UNIT_OF_MEASURE: return toName(product.getUnitOfMeasure());
+                case HOST: return product.getHost();
+            }
+            if (product.getOwner() == null) {
+                return null;
+            }
+            switch (this) {
+                case OWNER_NAME: return product.getOwner().getName();
+                case OWNER_HEIGHT: return toLong(product.getOwner().getHeight());
+                case EYE_COLOR: return toName(product.getOwner().getEyeColor());
+            }
+            if (product.getOwner().getLocation() == null) {
+                return null;
+            }
+            switch (this) {
+                case LOCATION_NAME: return product.getOwner().getLocation().getName();
+                case LOCATION_X: return product.getOwner().getLocation().getX();
+                case LOCATION_Y: return product.getOwner().getLocation().getY();
+                default: return (long) product.getOwner().getLocation().getZ();
+            }
+        }
+
+        /**
+         * Converts a value to the type the field is compared with.
+         * @param value - a number, a string, a date or an enum
+         * @throws BadValue if the value does not suit the field
+         */
+
+        public Comparable<?> normalize(Object value) throws BadValue {
+            if (value == null) {
+                return null;
+            }
+            switch (this) {
+                case X:
+                case Y:
+                    if (value instanceof Number) {
+                        return ((Number) value).doubleValue();
+                    }
+                    break;
+                case CREATION_DATE:
+                    if (value instanceof LocalDate) {
+                        return ((LocalDate) value).toEpochDay();
+                    }
+                    if (value instanceof Long) {
+                        return (Long) value;
+                    }
+                    break;
+                case ID:
+                case PRICE:
+                case OWNER_HEIGHT:
+                case LOCATION_X:
+                case LOCATION_Y:
+                case LOCATION_Z:
+                    if (value instanceof Number && !(value instanceof Double || value instanceof Float)) {
+                        return ((Number) value).longValue();
+                    }
+                    break;
+                default:
+                    if (value instanceof String) {
+                        return (String) value;
+                    }
+                    if (value instanceof Enum) {
+                        return ((Enum<?>) value).name();
+                    }
+            }
+            throw new BadValue("The value " + value + " does not suit the field " + name().toLowerCase() + ".");
+        }
+
+        /**
+         * Reads a value of the field from its text.
+         * @param text - the text typed by user
+         * @throws BadValue if the text is not a value of the field
+         */
+
+        public Comparable<?> parse(String text) throws BadValue {
+            try {
+                switch (this) {
+                    case X:
+                    case Y:
+                        return Double.parseDouble(text);
+                    case CREATION_DATE:
+                        return LocalDate.parse(text).toEpochDay();
+                    case ID:
+                    case PRICE:
+                    case OWNER_HEIGHT:
+                    case LOCATION_X:
+                    case LOCATION_Y:
+                    case LOCATION_Z:
+                        return Long.parseLong(text);
+                    case UNIT_OF_MEASURE:
+                    case EYE_COLOR:
+                        return text.toUpperCase();
+                    default:
+                        return text;
+                }
+            } catch (RuntimeException ex) {
+                throw new BadValue("The value " + text + " does not suit the field " + name().toLowerCase() + ".");
+            }
+        }
+
+        private static Comparable<?> toDouble(Float value) {
+            return value == null ? null : value.doubleValue();
+        }
+
+        private static Comparable<?> toLong(Integer value) {
+            return value == null ? null : value.longValue();
+        }
+
+        private static Comparable<?> toDay(LocalDate value) {
+            return value == null ? null : value.toEpochDay();
+        }
+
+        private static Comparable<?> toName(Enum<?> value) {
+            return value == null ? null : value.name();
+        }
+    }
+
+    private final ArrayList<Condition> conditions;
+    private Field sort;
+    private boolean descending;
+    private int offset;
+    private int limit;
+
+    /**
+     * Constructor
+     */
+
+    public Query() {
+        conditions = new ArrayList<>();
+        limit = DEFAULT_LIMIT;
+    }
+
+    /**
+     * Reads a query typed by user: field=value, field>=value, field<=value, sort=field or sort=-field,
+     * offset=number and limit=number.
+     * @param args - the parts of query
+     * @throws BadValue if a part can not be read
+     */
+
+    public static Query parse(String ... args) throws BadValue {
+        Query query = new Query();
+        for (String arg : args) {
+            int at = arg.indexOf('=');
+            if (at <= 0) {
+                throw new BadValue("The condition " + arg + " must look like field=value.");
+            }
+            String name = arg.substring(0, at);
+            String text = arg.substring(at + 1);
+            try {
+                if (name.equals("sort")) {
+                    boolean descending = text.startsWith("-");
+                    query.setSort(field(descending ? text.substring(1) : text), descending);
+                } else if (name.equals("offset")) {
+                    query.setOffset(Integer.parseInt(text));
+                } else if (name.equals("limit")) {
+                    query.setLimit(Integer.parseInt(text));
+                } else if (name.endsWith(">")) {
+                    Field field = field(name.substring(0, name.length() - 1));
+                    query.conditions.add(new Condition(field, field.parse(text), null));
+                } else if (name.endsWith("<")) {
+                    Field field = field(name.substring(0, name.length() - 1));
+                    query.conditions.add(new Condition(field, null, field.parse(text)));
+                } else {
+                    Field field = field(name);
+                    Comparable<?> value = field.parse(text);
+                    query.conditions.add(new Condition(field, value, value));
+                }
+            } catch (NumberFormatException ex) {
+                throw new BadValue("The number " + text + " is not correct.");
+            }
+        }
+        return query;
+    }
+
+    private static Field field(String name) throws BadValue {
+        try {
+            return Field.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new BadValue("There is no field " + name + ".");
+        }
+    }
+
+    /**
+     * Adds the condition that the field equals the value.
+     * @param field - the field
+     * @param value - the value, see Field.normalize
+     * @throws BadValue if the value does not suit the field
+     */
+
+    public Query equal(Field field, Object value) throws BadValue {
+        Comparable<?> normalized = field.normalize(value);
+        conditions.add(new Condition(field, normalized, normalized));
+        return this;
+    }
+
+    /**
+     * Adds the condition that the field is in the range, both ends are included.
+     * @param field - the field
+     * @param min - the lowest value or null
+     * @param max - the highest value or null
+     * @throws BadValue if a value does not suit the field
+     */
+
+    public Query range(Field field, Object min, Object max) throws BadValue {
+        conditions.add(new Condition(field, field.normalize(min), field.normalize(max)));
+        return this;
+    }
+
+    /**
+     * Checks if the product meets all conditions.
+     */
+
+    public boolean matches(Product product) {
+        for (Condition condition : conditions) {
+            if (!condition.matches(product)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the order of result: by the sort field, then by id.
+     */
+
+    public Comparator<Product> comparator() {
+        Comparator<Product> comparator = Comparator.comparingInt(Product::getId);
+        if (sort != null && sort != Field.ID) {
+            Field field = sort;
+            Comparator<Product> byField = (first, second) -> compare(field.of(first), field.of(second));
+            comparator = byField.thenComparing(comparator);
+        }
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Compares two values of one field, null goes before any value.
+     */
+
+    @SuppressWarnings("unchecked") // Field.of gives values of one type for one field
+    private static int compare(Comparable<?> first, Comparable<?> second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        return ((Comparable<Object>) first).compareTo(second);
+    }
+
+    /**
+     * Returns the condition which requires the field to be equal to one value.
+     * @param field - the field
+     * @return the condition or null if there is no such condition
+     */
+
+    Condition equality(Field field) {
+        for (Condition condition : conditions) {
+            if (condition.field == field && condition.min != null && condition.min.equals(condition.max)) {
+                return condition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first condition on the field.
+     * @param field - the field
+     * @return the condition or null if there is no such condition
+     */
+
+    Condition condition(Field field) {
+        for (Condition condition : conditions) {
+            if (condition.field == field) {
+                return condition;
+            }
+        }
+        return null;
+    }
+
+    List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    void addCondition(Condition condition) {
+        conditions.add(condition);
+    }
+
+    public Field getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Query setSort(Field sort, boolean descending) {
+        this.sort = sort;
+        this.descending = descending;
+        return this;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public Query setOffset(int offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Query setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return this;
+    }
+
+    /**
+     * Class of condition on one field. A missing end of range is not checked.
+     */
+
+    static class Condition implements Serializable {
+
+        private final Field field;
+        private final Comparable<?> min;
+        private final Comparable<?> max;
+
+        Condition(Field field, Comparable<?> min, Comparable<?> max) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean matches(Product product) {
+            Comparable<Object> value = (Comparable<Object>) field.of(product);
+            if (value == null) {
+                return false;
+            }
+            try {
+                return (min == null || value.compareTo(min) >= 0) && (max == null || value.compareTo(max) <= 0);
+            } catch (ClassCastException ex) {
+                return false;
+            }
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        Comparable<?> getMin() {
+            return min;
+        }
+
+        Comparable<?> getMax() {
+            return max;
+        }
+    }
+}
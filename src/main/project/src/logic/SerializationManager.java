@@ -1,27 +1,76 @@
 package src.logic;
 
-import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Class which chooses the format of packets.
+ * A client can start the connection with a handshake frame naming the codec, otherwise java serialization is used.
+ * The handshake can also tell that the client accepts compressed answers.
+ */
 
 public class SerializationManager {
 
-    public static byte[] serializeObject(Packet packet) throws IOException {
+    public static final Codec JAVA = new JavaCodec();
+    public static final Codec BINARY = new BinaryCodec();
+
+    private static final byte HANDSHAKE = (byte) 0xC0;
+    private static final int HANDSHAKE_SIZE = 2;
+    private static final int COMPRESSION = 1;
+
+    public static Codec forId(byte id) {
+        return id == BinaryCodec.ID ? BINARY : JAVA;
+    }
+
+    public static Codec forName(String name) {
+        return JAVA.getName().equalsIgnoreCase(name) ? JAVA : BINARY;
+    }
+
+    /**
+     * Creates the handshake frame.
+     * @param codec - the codec the client is going to use
+     * @return the frame ready for writing
+     */
 
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+    public static ByteBuffer handshake(Codec codec) {
+        return FrameDecoder.frame(new byte[] {HANDSHAKE, codec.getId()});
+    }
 
-        objectOutputStream.writeObject(packet);
-        objectOutputStream.flush();
+    /**
+     * Creates the handshake frame.
+     * @param codec - the codec the client is going to use
+     * @param compression - true if the client accepts compressed answers
+     * @return the frame ready for writing
+     */
 
-        return byteArrayOutputStream.toByteArray();
+    public static ByteBuffer handshake(Codec codec, boolean compression) {
+        return FrameDecoder.frame(new byte[] {HANDSHAKE, codec.getId(), (byte) (compression ? COMPRESSION : 0)});
     }
 
-    public static ServerPacket deserializeObject(byte[] bytes) {
-        try {
-            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
-            return (ServerPacket) input.readObject();
-        } catch(IOException | ClassNotFoundException ex) {
-            System.out.println(ex.getMessage());
+    /**
+     * Checks if the frame is a handshake.
+     * @param payload - the payload of frame
+     * @return the codec requested by the client or null if the frame is a usual packet
+     */
+
+    public static Codec acceptHandshake(ByteBuffer payload) {
+        if (isHandshake(payload)) {
+            return forId(payload.get(payload.position() + 1));
         }
         return null;
     }
+
+    /**
+     * Checks if the handshake asks for compressed answers.
+     * @param payload - the payload of handshake frame
+     */
+
+    public static boolean acceptsCompression(ByteBuffer payload) {
+        return isHandshake(payload) && payload.remaining() > HANDSHAKE_SIZE
+                && (payload.get(payload.position() + HANDSHAKE_SIZE) & COMPRESSION) != 0;
+    }
+
+    private static boolean isHandshake(ByteBuffer payload) {
+        return (payload.remaining() == HANDSHAKE_SIZE || payload.remaining() == HANDSHAKE_SIZE + 1)
+                && payload.get(payload.position()) == HANDSHAKE;
+    }
 }
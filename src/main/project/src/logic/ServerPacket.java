@@ -3,13 +3,32 @@ package src.logic;
 import src.elements.Product;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class ServerPacket implements Serializable {
 
+    /**
+     * The kind of answer: a message, the whole collection, changes of collection, a page of query result
+     * or a chunk of streamed collection.
+     */
+
+    public enum Kind {
+        MESSAGE,
+        SNAPSHOT,
+        DELTA,
+        PAGE,
+        CHUNK
+    }
+
     private Object object;
     private String message;
     private boolean isSuccessful;
     private boolean isMessage;
+    private Kind kind;
+    private long version;
+    private long requestId;
+    private transient Snapshot snapshot;
+    private transient int chunkSize;
 
     public ServerPacket() {
 
@@ -20,13 +39,102 @@ public class ServerPacket implements Serializable {
         this.message = message;
         this.isSuccessful = isSuccessful;
         this.isMessage = isMessage;
+        this.kind = isMessage ? Kind.MESSAGE : Kind.SNAPSHOT;
         if (object == null & message == null) {
            this.message = "Packet is empty.";
            this.isSuccessful = false;
            this.isMessage = true;
+           this.kind = Kind.MESSAGE;
         }
     }
 
+    ServerPacket(Kind kind, Object object, String message, boolean isSuccessful, long version) {
+        this.kind = kind;
+        this.object = object;
+        this.message = message;
+        this.isSuccessful = isSuccessful;
+        this.isMessage = kind == Kind.MESSAGE;
+        this.version = version;
+    }
+
+    /**
+     * Creates an answer with the whole collection.
+     * @param products - the products of collection
+     * @param version - the version of collection
+     */
+
+    public static ServerPacket snapshot(List<Product> products, long version) {
+        return new ServerPacket(Kind.SNAPSHOT, products, null, true, version);
+    }
+
+    static ServerPacket snapshot(Snapshot snapshot) {
+        ServerPacket packet = new ServerPacket(Kind.SNAPSHOT, snapshot.getProducts(), null, true, snapshot.getVersion());
+        packet.snapshot = snapshot;
+        return packet;
+    }
+
+    /**
+     * Creates an answer which is sent as a stream of chunks of the snapshot.
+     * @param snapshot - the snapshot to stream
+     * @param chunkSize - the number of products in one chunk
+     */
+
+    static ServerPacket stream(Snapshot snapshot, int chunkSize) {
+        ServerPacket packet = new ServerPacket(Kind.CHUNK, null, null, true, snapshot.getVersion());
+        packet.snapshot = snapshot;
+        packet.chunkSize = chunkSize;
+        return packet;
+    }
+
+    /**
+     * Creates an answer with one chunk of streamed collection.
+     * @param chunk - the chunk
+     * @param version - the version of streamed collection
+     */
+
+    public static ServerPacket chunk(Chunk chunk, long version) {
+        return new ServerPacket(Kind.CHUNK, chunk, null, true, version);
+    }
+
+    /**
+     * Creates an answer with changes of collection.
+     * @param changes - the changes in order of versions
+     * @param version - the version of collection after the changes
+     */
+
+    public static ServerPacket delta(List<ChangeEvent> changes, long version) {
+        return new ServerPacket(Kind.DELTA, changes, null, true, version);
+    }
+
+    /**
+     * Creates an answer with a page of query result.
+     * @param page - the page
+     * @param version - the version of collection the page was taken from
+     */
+
+    public static ServerPacket page(Page page, long version) {
+        return new ServerPacket(Kind.PAGE, page, null, true, version);
+    }
+
+    /**
+     * Creates a copy of the answer which refers to the request.
+     * The answer itself is not changed, so one answer can be shared by several clients.
+     * @param requestId - the number of request
+     */
+
+    public ServerPacket answering(long requestId) {
+        ServerPacket packet = new ServerPacket(kind, object, message, isSuccessful, version);
+        packet.isMessage = isMessage;
+        packet.requestId = requestId;
+        packet.snapshot = snapshot;
+        packet.chunkSize = chunkSize;
+        return packet;
+    }
+
+    void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public Object getObject() {
         return object;
     }
@@ -43,4 +151,36 @@ public class ServerPacket implements Serializable {
         return isMessage;
     }
 
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the snapshot this answer was made of, null for other answers and on the client.
+     */
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the number of products in one chunk if the snapshot must be streamed, 0 otherwise.
+     */
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the number of request this is the answer to, 0 for broadcasts.
+     */
+
+    public long getRequestId() {
+        return requestId;
+    }
+
 }
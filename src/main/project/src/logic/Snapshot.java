@@ -0,0 +1,58 @@
+package src.logic;
+
+import src.elements.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class of snapshot of collection.
+ * An immutable copy of collection with its version. One snapshot is shared by all readers until the next change,
+ * its encoded bytes are kept by SnapshotCache.
+ */
+
+public class Snapshot {
+
+    private final List<Product> products;
+    private final long version;
+    private final ServerPacket packet;
+
+    /**
+     * Constructor
+     * @param products - the products in order of id, they are copied
+     * @param version - the version of collection
+     */
+
+    Snapshot(Collection<Product> products, long version) {
+        this.products = Collections.unmodifiableList(new ArrayList<>(products));
+        this.version = version;
+        packet = ServerPacket.snapshot(this);
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the answer with this snapshot. The answer is shared, see ServerPacket.answering.
+     */
+
+    public ServerPacket toPacket() {
+        return packet;
+    }
+
+    /**
+     * Returns the answer which sends this snapshot by chunks.
+     * @param chunkSize - the number of products in one chunk
+     */
+
+    public ServerPacket toStream(int chunkSize) {
+        return ServerPacket.stream(this, chunkSize);
+    }
+}
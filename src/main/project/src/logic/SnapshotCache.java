@@ -0,0 +1,194 @@
+package src.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class of cache of encoded snapshots.
+ * Keeps the encoded, and if asked the compressed, snapshot by version, codec and compression.
+ * A snapshot is encoded once per change whatever the number of clients, every sender gets a view
+ * of the same read-only bytes. Only the latest versions are kept.
+ */
+
+public class SnapshotCache {
+
+    private static final int KEPT_VERSIONS = 2;
+
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private final int compressThreshold;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong encodedBytes;
+    private final AtomicLong compressedBytes;
+    private volatile long latest;
+
+    /**
+     * Constructor
+     * @param compressThreshold - the size of payload from which a snapshot is compressed for clients asking for it
+     */
+
+    public SnapshotCache(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        entries = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        encodedBytes = new AtomicLong();
+        compressedBytes = new AtomicLong();
+        latest = -1;
+    }
+
+    /**
+     * Returns the frame of answer with the snapshot.
+     * @param snapshot - the snapshot
+     * @param codec - the codec of client
+     * @param compression - true if the client accepts compressed frames
+     * @param requestId - the number of request, 0 for broadcasts
+     * @return the buffers to write one after another or null if the codec can not share the frame with this request
+     * @throws IOException if the snapshot can not be encoded
+     */
+
+    public ByteBuffer[] frame(Snapshot snapshot, Codec codec, boolean compression, long requestId) throws IOException {
+        if (compression) {
+            Entry entry = get(snapshot, codec, true);
+            if (entry.compressed) {
+                ByteBuffer body = entry.data.duplicate();
+                return new ByteBuffer[] {Compression.head(body.remaining(), requestId), body};
+            }
+        }
+        ByteBuffer frame = get(snapshot, codec, false).data.duplicate();
+        if (requestId == 0) {
+            return new ByteBuffer[] {frame};
+        }
+        return codec.readdress(frame, requestId);
+    }
+
+    private Entry get(Snapshot snapshot, Codec codec, boolean compression) throws IOException {
+        Key key = new Key(snapshot.getVersion(), codec.getId(), compression);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        Entry plain = compression ? get(snapshot, codec, false) : null;
+        try {
+            entry = entries.computeIfAbsent(key, k -> {
+                misses.incrementAndGet();
+                try {
+                    return plain == null ? encode(snapshot, codec) : compress(plain);
+                } catch (IOException ex) {
+                    throw new EncodingException(ex);
+                }
+            });
+        } catch (EncodingException ex) {
+            throw (IOException) ex.getCause();
+        }
+        evict(snapshot.getVersion());
+        return entry;
+    }
+
+    private Entry encode(Snapshot snapshot, Codec codec) throws IOException {
+        ByteBuffer frame = codec.encode(snapshot.toPacket());
+        encodedBytes.addAndGet(frame.remaining());
+        return new Entry(frame.asReadOnlyBuffer(), false);
+    }
+
+    /**
+     * Deflates the frame if it is large enough, otherwise the frame is sent as it is.
+     */
+
+    private Entry compress(Entry plain) {
+        if (plain.data.remaining() - FrameDecoder.HEADER_SIZE < compressThreshold) {
+            return plain;
+        }
+        byte[] deflated = Compression.deflate(plain.data);
+        compressedBytes.addAndGet(deflated.length);
+        return new Entry(ByteBuffer.wrap(deflated).asReadOnlyBuffer(), true);
+    }
+
+    /**
+     * Removes the entries of versions older than the kept ones.
+     */
+
+    private void evict(long version) {
+        if (version <= latest) {
+            return;
+        }
+        latest = version;
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().version <= version - KEPT_VERSIONS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot cache [hits = " + hits.get() + ", misses = " + misses.get() + ", entries = " + entries.size()
+                + ", encoded bytes = " + encodedBytes.get() + ", compressed bytes = " + compressedBytes.get() + "] ";
+    }
+
+    /**
+     * Class of key of cache.
+     */
+
+    private static class Key {
+
+        private final long version;
+        private final byte codec;
+        private final boolean compression;
+
+        Key(long version, byte codec, boolean compression) {
+            this.version = version;
+            this.codec = codec;
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return version == key.version && codec == key.codec && compression == key.compression;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (version ^ (version >>> 32)) * 31 + codec * 2 + (compression ? 1 : 0);
+        }
+    }
+
+    /**
+     * Class of cached bytes: a whole frame or a deflated payload.
+     */
+
+    private static class Entry {
+
+        private final ByteBuffer data;
+        private final boolean compressed;
+
+        Entry(ByteBuffer data, boolean compressed) {
+            this.data = data;
+            this.compressed = compressed;
+        }
+    }
+
+    private static class EncodingException extends RuntimeException {
+
+        EncodingException(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package src.logic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.elements.Product;
+import src.server.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Class of local file with the collection, so the server starts without reading the whole table.
+ * The file keeps the products with their colors in the binary codec and the highest id. It is clean while
+ * the database has no changes which are not in the file: the first change sent to the database after
+ * the file was written marks it dirty, a dirty file is not loaded. The server must be the only writer
+ * of the table, only the rows added by others after the highest id are read at start.
+ */
+
+public class SnapshotFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final int MAGIC = 0x50534E50;
+    private static final int FORMAT = 1;
+    private static final int CLEAN_OFFSET = 5;
+    private static final int HEADER_SIZE = 22;
+
+    private final Path path;
+    private final Path temporary;
+    private final BinaryCodec codec;
+    private boolean clean;
+    private long writes;
+    private int highWater;
+
+    /**
+     * Constructor
+     * @param path - the path of file
+     */
+
+    public SnapshotFile(Path path) {
+        this.path = path;
+        temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        codec = new BinaryCodec();
+    }
+
+    /**
+     * Reads the products from the file. The file is mapped into memory and decoded in place.
+     * @return the products in order of ids or null if there is no clean file
+     */
+
+    @SuppressWarnings("unchecked")
+    public synchronized List<Product> load() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != FORMAT) {
+                logger.warn("The snapshot file {} has an unknown format.", path);
+                return null;
+            }
+            if (buffer.get() == 0) {
+                logger.info("The snapshot file {} is older than the database.", path);
+                return null;
+            }
+            long version = buffer.getLong();
+            int savedHighWater = buffer.getInt();
+            int length = buffer.getInt();
+            if (length != buffer.remaining()) {
+                logger.warn("The snapshot file {} is broken.", path);
+                return null;
+            }
+            ServerPacket packet = codec.decodeServerPacket(buffer.slice());
+            List<Product> products = (List<Product>) packet.getObject();
+            highWater = savedHighWater;
+            clean = true;
+            logger.info("Loaded {} products of version {} from {}.", products.size(), version, path);
+            return products;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Unable to read the snapshot file {}, products are read from the database: {}", path, ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the collection if the database was changed after the last write. The collection is taken
+     * while no change is in progress, and the file is replaced only if nothing was sent to the database
+     * while it was written.
+     * @param collectionManager - the collection
+     * @param durable - tells if every change sent to the database is already written there
+     * @return true if the file was written
+     */
+
+    public boolean write(CollectionManager collectionManager, BooleanSupplier durable) {
+        long[] seen = new long[1];
+        Snapshot snapshot;
+        synchronized (this) {
+            if (clean) {
+                return false;
+            }
+        }
+        snapshot = collectionManager.whileIdle(() -> {
+            seen[0] = getWrites();
+            return collectionManager.getSnapshot();
+        });
+        List<Product> products = snapshot.getProducts();
+        int maxId = products.isEmpty() ? 0 : products.get(products.size() - 1).getId();
+        try {
+            ByteBuffer frame = codec.encode(ServerPacket.snapshot(products, snapshot.getVersion()));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE - FrameDecoder.HEADER_SIZE);
+            header.putInt(MAGIC).put((byte) FORMAT).put((byte) 1).putLong(snapshot.getVersion()).putInt(maxId);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining() || frame.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {header, frame});
+                }
+                channel.force(true);
+            }
+            synchronized (this) {
+                if (writes != seen[0] || !durable.getAsBoolean()) {
+                    Files.deleteIfExists(temporary);
+                    return false;
+                }
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                clean = true;
+                highWater = maxId;
+            }
+            logger.info("Saved {} products of version {} to {}.", products.size(), snapshot.getVersion(), path);
+            return true;
+        } catch (IOException ex) {
+            logger.warn("Unable to write the snapshot file {}: {}", path, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marks the file dirty before a change is sent to the database. Only the first change after a write
+     * touches the disk. If the mark can not be written, the file is removed.
+     */
+
+    public synchronized void markDirty() {
+        writes++;
+        if (!clean) {
+            return;
+        }
+        clean = false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0}), CLEAN_OFFSET);
+            channel.force(false);
+        } catch (IOException ex) {
+            logger.warn("Unable to mark the snapshot file dirty: {}", ex.getMessage());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private synchronized long getWrites() {
+        return writes;
+    }
+
+    public synchronized boolean isClean() {
+        return clean;
+    }
+
+    /**
+     * Returns the highest id of products in the file, the products added after it are read from the database.
+     */
+
+    public synchronized int getHighWater() {
+        return highWater;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
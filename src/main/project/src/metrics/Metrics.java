@@ -0,0 +1,197 @@
+package src.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class of metrics of server.
+ * Keeps latency histograms of commands, database calls and waits for locks of collection, the number of requests,
+ * the traffic and the number of clients. One instance is shared by the whole process, like BufferPool.shared,
+ * so the database layer records its calls without a reference to the server.
+ */
+
+public class Metrics implements MetricsMXBean {
+
+    public static final Metrics shared = new Metrics();
+
+    private static final int RATE_WINDOW = 60;
+
+    private final ConcurrentHashMap<String, LatencyHistogram> commands;
+    private final ConcurrentHashMap<String, LatencyHistogram> database;
+    private final ConcurrentHashMap<String, LatencyHistogram> locks;
+    private final LatencyHistogram queueWait;
+    private final AtomicLong requests;
+    private final AtomicLongArray requestsPerSecond;
+    private final AtomicLongArray seconds;
+    private final AtomicLong bytesIn;
+    private final AtomicLong bytesOut;
+    private final AtomicInteger clients;
+
+    /**
+     * Constructor
+     */
+
+    public Metrics() {
+        commands = new ConcurrentHashMap<>();
+        database = new ConcurrentHashMap<>();
+        locks = new ConcurrentHashMap<>();
+        queueWait = new LatencyHistogram();
+        requests = new AtomicLong();
+        requestsPerSecond = new AtomicLongArray(RATE_WINDOW);
+        seconds = new AtomicLongArray(RATE_WINDOW);
+        bytesIn = new AtomicLong();
+        bytesOut = new AtomicLong();
+        clients = new AtomicInteger();
+    }
+
+    /**
+     * Records an executed request.
+     * @param command - the name of command
+     * @param waited - the time in nanoseconds the request waited for a worker
+     * @param latency - the time in nanoseconds from arrival of request to its answer queued for sending
+     */
+
+    public void command(String command, long waited, long latency) {
+        requests.incrementAndGet();
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        int slot = (int) Math.floorMod(second, (long) RATE_WINDOW);
+        long stamp = seconds.get(slot);
+        if (stamp != second && seconds.compareAndSet(slot, stamp, second)) {
+            requestsPerSecond.set(slot, 0);
+        }
+        requestsPerSecond.incrementAndGet(slot);
+        queueWait.record(waited);
+        histogram(commands, command).record(latency);
+    }
+
+    /**
+     * Records a call of database.
+     * @param call - the name of call, for example products.create
+     * @param latency - the time of call in nanoseconds
+     */
+
+    public void database(String call, long latency) {
+        histogram(database, call).record(latency);
+    }
+
+    /**
+     * Records a wait for a lock.
+     * @param lock - the name of lock
+     * @param latency - the time of waiting in nanoseconds
+     */
+
+    public void lockWait(String lock, long latency) {
+        histogram(locks, lock).record(latency);
+    }
+
+    public void received(long bytes) {
+        bytesIn.addAndGet(bytes);
+    }
+
+    public void sent(long bytes) {
+        bytesOut.addAndGet(bytes);
+    }
+
+    public void connected() {
+        clients.incrementAndGet();
+    }
+
+    public void disconnected() {
+        clients.decrementAndGet();
+    }
+
+    private static LatencyHistogram histogram(ConcurrentHashMap<String, LatencyHistogram> histograms, String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the mean number of requests per second over the last minute, the current second is not counted.
+     */
+
+    @Override
+    public double getRequestsPerSecond() {
+        long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long total = 0;
+        for (int i = 0; i < RATE_WINDOW; i++) {
+            long second = seconds.get(i);
+            if (second < now && now - second <= RATE_WINDOW) {
+                total += requestsPerSecond.get(i);
+            }
+        }
+        return (double) total / RATE_WINDOW;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public int getConnectedClients() {
+        return clients.get();
+    }
+
+    @Override
+    public Map<String, Double> getCommandP99() {
+        return p99(commands);
+    }
+
+    @Override
+    public Map<String, Double> getDatabaseP99() {
+        return p99(database);
+    }
+
+    @Override
+    public Map<String, Double> getLockWaitP99() {
+        return p99(locks);
+    }
+
+    private static Map<String, Double> p99(Map<String, LatencyHistogram> histograms) {
+        TreeMap<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().percentile(99) / 1e6);
+        }
+        return result;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("requests ").append(requests.get())
+                .append(String.format(", %.1f per second over the last minute%n", getRequestsPerSecond()));
+        report.append("clients ").append(clients.get()).append(", bytes in ").append(bytesIn.get())
+                .append(", bytes out ").append(bytesOut.get()).append('\n');
+        report.append("waiting for worker: ").append(queueWait).append('\n');
+        append(report, "command", commands);
+        append(report, "database", database);
+        append(report, "lock", locks);
+        return report.toString();
+    }
+
+    private static void append(StringBuilder report, String kind, Map<String, LatencyHistogram> histograms) {
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            report.append(kind).append(' ').append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+}
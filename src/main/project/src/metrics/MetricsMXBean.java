@@ -0,0 +1,44 @@
+package src.metrics;
+
+import java.util.Map;
+
+/**
+ * Interface of metrics of server for JMX. Latencies are in milliseconds.
+ */
+
+public interface MetricsMXBean {
+
+    long getRequests();
+
+    double getRequestsPerSecond();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    int getConnectedClients();
+
+    /**
+     * Returns the 99th percentile of latency of every command.
+     */
+
+    Map<String, Double> getCommandP99();
+
+    /**
+     * Returns the 99th percentile of latency of every database call.
+     */
+
+    Map<String, Double> getDatabaseP99();
+
+    /**
+     * Returns the 99th percentile of waiting for every lock of collection.
+     */
+
+    Map<String, Double> getLockWaitP99();
+
+    /**
+     * Returns the whole report as text.
+     */
+
+    String getReport();
+}
@@ -0,0 +1,69 @@
+package src.server;
+
+import src.elements.Product;
+import src.logic.Chunk;
+import src.logic.Codec;
+import src.logic.ServerPacket;
+import src.logic.Snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Class of sender of streamed snapshot.
+ * Encodes the snapshot chunk by chunk and stops when the client has enough unsent data in its queue,
+ * the connection resumes the sender when the queue gets short. So a stream holds at most a few chunks in memory
+ * whatever the size of collection.
+ */
+
+public class ChunkSender implements Runnable {
+
+    private final Connection connection;
+    private final Snapshot snapshot;
+    private final int chunkSize;
+    private final long requestId;
+    private int position;
+    private int sequence;
+
+    /**
+     * Constructor
+     * @param connection - the connection to send to
+     * @param snapshot - the snapshot to stream
+     * @param chunkSize - the number of products in one chunk
+     * @param requestId - the number of request
+     */
+
+    ChunkSender(Connection connection, Snapshot snapshot, int chunkSize, long requestId) {
+        this.connection = connection;
+        this.snapshot = snapshot;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.requestId = requestId;
+    }
+
+    @Override
+    public void run() {
+        List<Product> products = snapshot.getProducts();
+        Codec codec = connection.getCodec();
+        try {
+            while (sequence == 0 || position < products.size()) {
+                if (connection.isClosed()) {
+                    return;
+                }
+                if (!connection.isWritable()) {
+                    connection.whenWritable(this);
+                    return;
+                }
+                int end = Math.min(position + chunkSize, products.size());
+                boolean last = end == products.size();
+                Chunk chunk = new Chunk(products.subList(position, end), sequence, last);
+                ServerPacket packet = ServerPacket.chunk(chunk, snapshot.getVersion()).answering(requestId);
+                connection.send(new ByteBuffer[] {codec.encode(packet)}, last ? snapshot.getVersion() : -1, false);
+                position = end;
+                sequence++;
+            }
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+}
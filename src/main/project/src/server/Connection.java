@@ -0,0 +1,320 @@
+package src.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.logic.Codec;
+import src.logic.SerializationManager;
+import src.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class of client connection.
+ * Keeps the state of one socket: its I/O loop, the reader of incoming packets and the queue of outgoing data.
+ * The socket itself is touched only by the I/O loop, other threads just put data to the queue.
+ * Broadcasts for a client which does not read fast enough are handled by the slow consumer policy.
+ */
+
+public class Connection {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final long id;
+    private final SocketChannel socket;
+    private final EventLoop loop;
+    private final Reader reader;
+    private final SerialExecutor executor;
+    private final OutboundQueue outbound;
+    private final SlowConsumerPolicy policy;
+    private final QueueMetrics metrics;
+    private final AtomicLong version;
+    private final AtomicBoolean stale;
+    private final AtomicReference<Runnable> resume;
+    private final long streamWindow;
+    private Runnable drainListener;
+    private SelectionKey key;
+    private volatile Codec codec;
+    private volatile boolean compression;
+    private volatile boolean closed;
+    private volatile long readBytes;
+
+    /**
+     * Constructor
+     * @param socket - the accepted socket
+     * @param loop - the I/O loop serving the socket
+     * @param workers - the pool executing commands
+     * @param policy - what to do with broadcasts when the client is slow
+     * @param outboundLimit - the number of queued bytes after which the client is considered slow
+     * @param metrics - the metrics of outbound queues
+     */
+
+    Connection(SocketChannel socket, EventLoop loop, Executor workers, SlowConsumerPolicy policy,
+               long outboundLimit, QueueMetrics metrics) {
+        id = ids.incrementAndGet();
+        this.socket = socket;
+        this.loop = loop;
+        this.executor = new SerialExecutor(workers);
+        this.reader = new Reader(this);
+        this.policy = policy;
+        this.metrics = metrics;
+        outbound = new OutboundQueue(outboundLimit, metrics);
+        codec = SerializationManager.JAVA;
+        version = new AtomicLong(-1);
+        stale = new AtomicBoolean(false);
+        resume = new AtomicReference<>();
+        streamWindow = Math.max(1, outboundLimit / 4);
+        closed = false;
+        Metrics.shared.connected();
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Queues the data for sending. Can be called from any thread.
+     * @param buffer - the data to send
+     */
+
+    public void send(ByteBuffer buffer) {
+        send(new ByteBuffer[] {buffer}, -1, false);
+    }
+
+    /**
+     * Queues the frame for sending. Can be called from any thread.
+     * @param frame - the buffers of frame, written one after another
+     * @param sentVersion - the version of collection carried by the frame, -1 if it carries no collection
+     * @param broadcast - true if the frame is a broadcast which can be dropped
+     */
+
+    void send(ByteBuffer[] frame, long sentVersion, boolean broadcast) {
+        if (closed) {
+            return;
+        }
+        outbound.add(frame, sentVersion, broadcast);
+        loop.requestWrite(this);
+    }
+
+    /**
+     * Decides whether the client can get the next broadcast. Called by the observer before it builds one.
+     * When queued broadcasts are dropped, the version goes back to the last delivered one,
+     * so the next broadcast brings all the changes the client has missed.
+     * @return false if the client must not get the broadcast now
+     */
+
+    boolean prepareBroadcast() {
+        if (closed) {
+            return false;
+        }
+        switch (policy) {
+            case KEEP_LATEST:
+                if (outbound.dropBroadcasts() > 0) {
+                    rewindVersion();
+                }
+                return true;
+            case DROP_STALE:
+                if (outbound.isOverLimit()) {
+                    metrics.dropped(1);
+                    stale.set(true);
+                    rewindVersion();
+                    return false;
+                }
+                return true;
+            case DISCONNECT:
+            default:
+                if (outbound.isOverLimit()) {
+                    logger.warn("Client is too slow, disconnecting.");
+                    metrics.disconnected();
+                    loop.requestClose(this);
+                    return false;
+                }
+                return true;
+        }
+    }
+
+    private void rewindVersion() {
+        long delivered = outbound.getDeliveredVersion();
+        version.set(delivered < 0 ? 0 : delivered);
+    }
+
+    /**
+     * Sets the action run when a stale client has drained its queue.
+     * @param drainListener - the action, usually scheduling a broadcast
+     */
+
+    void setDrainListener(Runnable drainListener) {
+        this.drainListener = drainListener;
+    }
+
+    /**
+     * Tells whether a stream can queue more data. Streams keep well under the outbound limit,
+     * so they never make the client look slow for broadcasts.
+     */
+
+    boolean isWritable() {
+        return outbound.getBytes() < streamWindow;
+    }
+
+    /**
+     * Runs the task on the executor of connection when the queue gets short. Only one task can wait.
+     * @param task - the task, usually a stream which has stopped
+     */
+
+    void whenWritable(Runnable task) {
+        resume.set(task);
+        if (isWritable() || closed) {
+            resumeStream();
+        }
+    }
+
+    private void resumeStream() {
+        Runnable task = resume.getAndSet(null);
+        if (task != null) {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Writes as much of the queued data as the socket accepts. Called only by the I/O loop.
+     * @throws IOException if the socket was closed by the client
+     */
+
+    void flush() throws IOException {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        boolean written = outbound.write(socket);
+        if (resume.get() != null && isWritable()) {
+            resumeStream();
+        }
+        if (!written) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (stale.compareAndSet(true, false) && drainListener != null) {
+            drainListener.run();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Metrics.shared.disconnected();
+        outbound.clear();
+        reader.release();
+        try {
+            if (key != null) {
+                key.cancel();
+            }
+            logger.debug("Client has disconnected.");
+            socket.close();
+        } catch (IOException ex) {
+            logger.warn("Unable to close the connection: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds the bytes read from the socket. Called only by the I/O loop.
+     */
+
+    void received(int bytes) {
+        readBytes += bytes;
+        Metrics.shared.received(bytes);
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getWrittenBytes() {
+        return outbound.getWrittenBytes();
+    }
+
+    /**
+     * Returns the number of connection, unique while the server runs.
+     */
+
+    public long getId() {
+        return id;
+    }
+
+    SocketChannel getSocket() {
+        return socket;
+    }
+
+    Reader getReader() {
+        return reader;
+    }
+
+    /**
+     * Returns the executor which runs requests of this connection in order of arrival.
+     */
+
+    SerialExecutor getExecutor() {
+        return executor;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Tells whether the client accepts compressed answers.
+     */
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the version of collection the client has got, -1 if it has not asked for the collection yet.
+     */
+
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Remembers that the client has got the collection up to the given version.
+     * @param sent - the version of sent snapshot or changes
+     */
+
+    void advanceVersion(long sent) {
+        version.accumulateAndGet(sent, Math::max);
+    }
+
+    /**
+     * Returns the number of frames waiting for the socket.
+     */
+
+    public int getQueueDepth() {
+        return outbound.getDepth();
+    }
+
+    public long getQueuedBytes() {
+        return outbound.getBytes();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,153 @@
+package src.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class of the I/O loop.
+ * Every loop owns one selector and serves read and write readiness of the connections registered on it.
+ * Commands are never executed here, decoded packets are handed to the worker pool.
+ */
+
+public class EventLoop implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+
+    private final Server server;
+    private final Selector selector;
+    private final Queue<Connection> registrations;
+    private final Queue<Connection> writeRequests;
+    private final Queue<Connection> closeRequests;
+    private volatile boolean running;
+
+    EventLoop(Server server) throws IOException {
+        this.server = server;
+        selector = Selector.open();
+        registrations = new ConcurrentLinkedQueue<>();
+        writeRequests = new ConcurrentLinkedQueue<>();
+        closeRequests = new ConcurrentLinkedQueue<>();
+        running = true;
+    }
+
+    /**
+     * Registers a new connection on this loop. Can be called from any thread.
+     * @param connection - the accepted connection
+     */
+
+    void register(Connection connection) {
+        registrations.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the loop to start watching OP_WRITE for the connection. Can be called from any thread.
+     * @param connection - the connection with pending output
+     */
+
+    void requestWrite(Connection connection) {
+        writeRequests.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the loop to close the connection. Can be called from any thread.
+     * @param connection - the connection to close
+     */
+
+    void requestClose(Connection connection) {
+        closeRequests.add(connection);
+        selector.wakeup();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                processRegistrations();
+                processWriteRequests();
+                processCloseRequests();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException ex) {
+                logger.warn("I/O loop has failed: {}", ex.getMessage());
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            close((Connection) key.attachment());
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            logger.warn("Unable to close the selector: {}", ex.getMessage());
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable() && !connection.getReader().read()) {
+                close(connection);
+                return;
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException | CancelledKeyException ex) {
+            close(connection);
+        }
+    }
+
+    private void processRegistrations() {
+        Connection connection;
+        while ((connection = registrations.poll()) != null) {
+            try {
+                connection.attach(connection.getSocket().register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException ex) {
+                close(connection);
+            }
+        }
+    }
+
+    private void processWriteRequests() {
+        Connection connection;
+        while ((connection = writeRequests.poll()) != null) {
+            try {
+                connection.flush();
+            } catch (IOException | CancelledKeyException ex) {
+                close(connection);
+            }
+        }
+    }
+
+    private void processCloseRequests() {
+        Connection connection;
+        while ((connection = closeRequests.poll()) != null) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        connection.close();
+        server.unregister(connection);
+    }
+}
@@ -3,24 +3,78 @@ package src.server;
 import com.sun.org.glassfish.gmbal.ManagedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import src.logic.Packet;
 import src.logic.ServerPacket;
+import src.metrics.Metrics;
 
-import java.util.concurrent.*;
-
-public class Handler implements Callable<ServerPacket> {
+public class Handler implements Runnable {
 
+    private Connection connection;
     private Packet packet;
+    private final long received;
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
+    private static final String CORRELATION_ID = "request";
+    private static final ClassValue<String> names = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getSimpleName();
+        }
+    };
 
-    Handler(Packet packet) {
+    Handler(Connection connection, Packet packet) {
+        this.connection = connection;
         this.packet = packet;
+        received = System.nanoTime();
     }
 
+    /**
+     * Executes the command and sends the answer. When debug logging is on, log messages of the request carry
+     * its correlation id, the number of connection and the number of request. Otherwise the id is not built,
+     * so the request path does not allocate for logging.
+     */
+
     @Override
-    public ServerPacket call() {
-        logger.info("Handler");
-        return packet.getCommand().executeOnServer(Server.server, packet.getUser(), packet.getArgument());
+    public void run() {
+        long started = System.nanoTime();
+        boolean traced = logger.isDebugEnabled();
+        if (traced) {
+            MDC.put(CORRELATION_ID, connection.getId() + "-" + packet.getRequestId());
+        }
+        try {
+            execute();
+        } catch (RuntimeException ex) {
+            logger.error("Unable to execute {}: {}", names.get(packet.getCommand().getClass()), ex.toString());
+            new Sender(connection, new ServerPacket(null, "The command has failed on the server.", false, true)
+                    .answering(packet.getRequestId())).run();
+        } finally {
+            if (traced) {
+                MDC.remove(CORRELATION_ID);
+            }
+            Metrics.shared.command(names.get(packet.getCommand().getClass()), started - received,
+                    System.nanoTime() - received);
+        }
+    }
+
+    /**
+     * Executes the command and sends the answer.
+     * @throws RuntimeException if the command has failed, the caller answers with an error then
+     */
+
+    private void execute() {
+        logger.debug("Executing {}.", names.get(packet.getCommand().getClass()));
+        ServerPacket answer = packet.getCommand().executeOnServer(Server.server, packet.getUser(), packet.getArgument());
+        if (answer != null) {
+            answer = answer.answering(packet.getRequestId());
+            if (answer.getKind() == ServerPacket.Kind.SNAPSHOT || answer.getChunkSize() > 0) {
+                connection.advanceVersion(answer.getVersion());
+            }
+            if (answer.getChunkSize() > 0) {
+                new ChunkSender(connection, answer.getSnapshot(), answer.getChunkSize(), packet.getRequestId()).run();
+            } else {
+                new Sender(connection, answer).run();
+            }
+        }
     }
 
 }
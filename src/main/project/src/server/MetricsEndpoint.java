@@ -0,0 +1,90 @@
+package src.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import src.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Class of local endpoint with metrics of server.
+ * Answers GET /metrics with the plain text report: the metrics of requests, database and locks,
+ * the outbound queues, the snapshot cache and the traffic of every connection.
+ * Listens only on localhost.
+ */
+
+public class MetricsEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(Server.class);
+
+    private final Server server;
+    private HttpServer http;
+
+    /**
+     * Constructor
+     * @param server - the server to report
+     */
+
+    MetricsEndpoint(Server server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts listening.
+     * @param port - the port on localhost
+     * @throws IOException if the port is busy
+     */
+
+    void start(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        http.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        http.createContext("/metrics", exchange -> {
+            byte[] body = report().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        http.start();
+        logger.info("Metrics are available on http://localhost:{}/metrics", http.getAddress().getPort());
+    }
+
+    void stop() {
+        if (http != null) {
+            http.stop(0);
+        }
+    }
+
+    /**
+     * Makes the report of server.
+     */
+
+    String report() {
+        StringBuilder report = new StringBuilder(Metrics.shared.getReport());
+        report.append(server.getQueueMetrics()).append('\n');
+        report.append(server.getSnapshotCache()).append('\n');
+        for (Connection connection : server.getConnections()) {
+            String address;
+            try {
+                address = String.valueOf(connection.getSocket().getRemoteAddress());
+            } catch (IOException ex) {
+                address = "closed";
+            }
+            report.append("connection ").append(address).append(": codec ").append(connection.getCodec().getName())
+                    .append(", bytes in ").append(connection.getReadBytes())
+                    .append(", bytes out ").append(connection.getWrittenBytes())
+                    .append(", queued bytes ").append(connection.getQueuedBytes()).append('\n');
+        }
+        return report.toString();
+    }
+}
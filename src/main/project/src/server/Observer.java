@@ -1,36 +1,73 @@
 package src.server;
 
-import src.commands.Command_Show;
-import src.elements.Product;
+import src.logic.ChangeEvent;
 import src.logic.CollectionManager;
 import src.logic.ServerPacket;
 
-import java.lang.reflect.Array;
-import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class Observer extends Thread {
+/**
+ * Class of observer of collection.
+ * After changes of collection sends every client the changes it has not got yet.
+ * A client which is too far behind gets the whole collection instead.
+ * Broadcasts are encoded and queued right here on the single thread of observer, so deltas reach
+ * the outbound queue of a client in order of versions and the queued ones can always be dropped.
+ */
 
-    private ArrayList<SocketChannel> socketChannels;
+public class Observer implements Runnable {
+
+    private Collection<Connection> connections;
     private CollectionManager collectionManager;
+    private Executor executor;
+    private AtomicBoolean scheduled;
 
-    Observer(ArrayList<SocketChannel> socketChannels, CollectionManager collectionManager) {
-        this.socketChannels = socketChannels;
+    Observer(Collection<Connection> connections, CollectionManager collectionManager, Executor executor) {
+        this.connections = connections;
         this.collectionManager = collectionManager;
+        this.executor = executor;
+        scheduled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Schedules a broadcast. Changes which come while a broadcast is waiting are sent with it.
+     */
+
+    void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
     }
 
     @Override
     public void run() {
+        scheduled.set(false);
 
-        ExecutorService executorService = Executors.newFixedThreadPool(20);
-
-        ArrayList<Product> products = collectionManager.show();
+        long version = collectionManager.getVersion();
+        ServerPacket snapshot = null;
 
-        for(SocketChannel s : socketChannels) {
-            Sender sender = new Sender(s, new ServerPacket(products, null, true, false));
-            executorService.submit(sender);
+        for (Connection connection : connections) {
+            if (connection.getVersion() < 0 || connection.getVersion() >= version || !connection.prepareBroadcast()) {
+                continue;
+            }
+            long sent = connection.getVersion();
+            ArrayList<ChangeEvent> changes = collectionManager.changesSince(sent);
+            ServerPacket packet;
+            if (changes != null) {
+                if (changes.isEmpty()) {
+                    continue;
+                }
+                packet = ServerPacket.delta(changes, changes.get(changes.size() - 1).getVersion());
+            } else {
+                if (snapshot == null) {
+                    snapshot = collectionManager.showSnapshot();
+                }
+                packet = snapshot;
+            }
+            connection.advanceVersion(packet.getVersion());
+            new Sender(connection, packet, true).run();
         }
     }
 }
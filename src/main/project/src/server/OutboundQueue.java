@@ -0,0 +1,210 @@
+package src.server;
+
+import src.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Class of outbound queue of one connection.
+ * Keeps the frames waiting for the socket and writes several of them with one gathering write.
+ * Producers are worker threads, the consumer is the I/O loop, so every method is synchronized.
+ */
+
+public class OutboundQueue {
+
+    private static final int MAX_GATHER = 64;
+
+    private final ArrayDeque<Entry> entries;
+    private final long limit;
+    private final QueueMetrics metrics;
+    private final ByteBuffer[] gather;
+    private long bytes;
+    private long deliveredVersion;
+    private long writtenBytes;
+
+    /**
+     * Constructor
+     * @param limit - the number of queued bytes after which the client is considered slow
+     * @param metrics - the metrics shared by all queues
+     */
+
+    OutboundQueue(long limit, QueueMetrics metrics) {
+        this.limit = limit;
+        this.metrics = metrics;
+        entries = new ArrayDeque<>();
+        gather = new ByteBuffer[MAX_GATHER];
+        deliveredVersion = -1;
+    }
+
+    /**
+     * Adds a frame to the end of the queue.
+     * @param frame - the buffers of frame, written one after another
+     * @param version - the version of collection carried by the frame, -1 if it carries no collection
+     * @param broadcast - true if the frame is a broadcast which can be dropped
+     */
+
+    synchronized void add(ByteBuffer[] frame, long version, boolean broadcast) {
+        Entry entry = new Entry(frame, version, broadcast);
+        entries.add(entry);
+        bytes += entry.size;
+        metrics.queued(entries.size(), entry.size);
+    }
+
+    /**
+     * Removes the broadcasts which were not started to write.
+     * @return the number of removed broadcasts
+     */
+
+    synchronized int dropBroadcasts() {
+        int dropped = 0;
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.broadcast && !entry.isStarted()) {
+                iterator.remove();
+                bytes -= entry.size;
+                metrics.removed(entry.size);
+                dropped++;
+            }
+        }
+        metrics.dropped(dropped);
+        return dropped;
+    }
+
+    /**
+     * Writes queued frames to the channel with gathering writes until the channel stops accepting data.
+     * @param channel - the non-blocking channel
+     * @return true if the queue is empty
+     * @throws IOException if the channel is closed
+     */
+
+    synchronized boolean write(GatheringByteChannel channel) throws IOException {
+        while (!entries.isEmpty()) {
+            int count = 0;
+            for (Entry entry : entries) {
+                entry.skipWritten();
+                int pending = entry.frame.length - entry.offset;
+                if (count + pending > MAX_GATHER && count > 0) {
+                    break;
+                }
+                for (int i = entry.offset; i < entry.frame.length && count < MAX_GATHER; i++) {
+                    gather[count++] = entry.frame[i];
+                }
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            long written = channel.write(gather, 0, count);
+            int completed = 0;
+            while (!entries.isEmpty() && !entries.peek().hasRemaining()) {
+                Entry entry = entries.poll();
+                bytes -= entry.size;
+                metrics.removed(entry.size);
+                if (entry.version > deliveredVersion) {
+                    deliveredVersion = entry.version;
+                }
+                completed++;
+            }
+            metrics.written(completed, written);
+            writtenBytes += written;
+            Metrics.shared.sent(written);
+            if (count > 0 && gather[count - 1].hasRemaining()) {
+                Arrays.fill(gather, 0, count, null);
+                return false;
+            }
+        }
+        Arrays.fill(gather, null);
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes written to the socket since the connection was opened.
+     */
+
+    synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    synchronized boolean isOverLimit() {
+        return bytes > limit;
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the latest version of collection which was completely written to the socket.
+     */
+
+    synchronized long getDeliveredVersion() {
+        return deliveredVersion;
+    }
+
+    synchronized int getDepth() {
+        return entries.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized void clear() {
+        metrics.removed(bytes);
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Class of queued frame.
+     */
+
+    private static class Entry {
+
+        private final ByteBuffer[] frame;
+        private final long version;
+        private final boolean broadcast;
+        private final long size;
+        private int offset;
+
+        Entry(ByteBuffer[] frame, long version, boolean broadcast) {
+            this.frame = frame;
+            this.version = version;
+            this.broadcast = broadcast;
+            size = remaining();
+        }
+
+        private long remaining() {
+            long remaining = 0;
+            for (ByteBuffer buffer : frame) {
+                remaining += buffer.remaining();
+            }
+            return remaining;
+        }
+
+        /**
+         * Moves the offset past the buffers which were written completely,
+         * so frames longer than one gathering write continue from where the previous write stopped.
+         */
+
+        void skipWritten() {
+            while (offset < frame.length && !frame[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+
+        boolean hasRemaining() {
+            skipWritten();
+            return offset < frame.length;
+        }
+
+        boolean isStarted() {
+            return remaining() < size;
+        }
+    }
+}
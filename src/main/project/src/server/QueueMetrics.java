@@ -0,0 +1,71 @@
+package src.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class of metrics of outbound queues.
+ * Shared by all connections of the server.
+ */
+
+public class QueueMetrics {
+
+    private final AtomicLong queuedMessages = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong maxDepth = new AtomicLong();
+    private final AtomicLong writtenMessages = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong writeCalls = new AtomicLong();
+    private final AtomicLong droppedBroadcasts = new AtomicLong();
+    private final AtomicLong disconnectedClients = new AtomicLong();
+
+    void queued(int depth, long bytes) {
+        queuedMessages.incrementAndGet();
+        queuedBytes.addAndGet(bytes);
+        maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    void written(int messages, long bytes) {
+        writeCalls.incrementAndGet();
+        writtenMessages.addAndGet(messages);
+        writtenBytes.addAndGet(bytes);
+    }
+
+    void removed(long bytes) {
+        queuedBytes.addAndGet(-bytes);
+    }
+
+    void dropped(int messages) {
+        droppedBroadcasts.addAndGet(messages);
+    }
+
+    void disconnected() {
+        disconnectedClients.incrementAndGet();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getDroppedBroadcasts() {
+        return droppedBroadcasts.get();
+    }
+
+    public long getDisconnectedClients() {
+        return disconnectedClients.get();
+    }
+
+    @Override
+    public String toString() {
+        long calls = writeCalls.get();
+        return "Outbound queues [queued bytes = " + queuedBytes.get() + ", max depth = " + maxDepth.get()
+                + ", messages = " + queuedMessages.get() + ", written messages = " + writtenMessages.get()
+                + ", written bytes = " + writtenBytes.get() + ", messages per write = "
+                + (calls == 0 ? 0 : (double) writtenMessages.get() / calls)
+                + ", dropped broadcasts = " + droppedBroadcasts.get()
+                + ", disconnected slow clients = " + disconnectedClients.get() + "] ";
+    }
+}
@@ -2,74 +2,77 @@ package src.server;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import src.logic.BufferPool;
+import src.logic.Codec;
+import src.logic.FrameDecoder;
 import src.logic.Packet;
+import src.logic.SerializationManager;
 import src.logic.ServerPacket;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.*;
 
-public class Reader implements Runnable {
+public class Reader {
 
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
-    private final int BUFFER_SIZE = 4096;
-    private SocketChannel socket;
+    private final Connection connection;
+    private final FrameDecoder decoder;
 
-    Reader(SocketChannel socket) {
-        this.socket = socket;
+    Reader(Connection connection) {
+        this.connection = connection;
+        decoder = new FrameDecoder(BufferPool.shared);
     }
 
-    @Override
-    public void run() {
+    /**
+     * Reads the available data and hands received packets to the worker pool.
+     * Called by the I/O loop when the socket is readable.
+     * @return false if the client has closed the connection
+     * @throws IOException if the socket was reset or the client sent a broken frame
+     */
 
-        try {
-
-            logger.info("Server started accepting the new request.");
-
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-
-            ExecutorService senderExecutor = Executors.newCachedThreadPool();
-            ForkJoinPool handlerPool = new ForkJoinPool(1);
-
-            while(socket.isConnected()) {
-                socket.read(buffer);
-                if (buffer.position() > 0) {
-                    byte[] bytes = buffer.array();
-                    Packet packet = deserialize(bytes);
-                    if (packet != null) {
-                        Handler handler = new Handler(packet);
-                        Future<ServerPacket> result = handlerPool.submit(handler);
-                        try {
-                            ServerPacket answer = result.get(30, TimeUnit.SECONDS);
-                            Sender sender = new Sender(socket, answer);
-                            senderExecutor.submit(sender);
-                        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-                            ex.printStackTrace();
-                        }
-                    }
-                    buffer.clear();
-                }
+    boolean read() throws IOException {
+        int count = decoder.read(connection.getSocket());
+        if (count == -1) {
+            return false;
+        }
+        connection.received(count);
+        decoder.decode(frame -> {
+            Codec codec = SerializationManager.acceptHandshake(frame);
+            if (codec != null) {
+                connection.setCodec(codec);
+                connection.setCompression(SerializationManager.acceptsCompression(frame));
+                logger.debug("Client has chosen the {} codec.", codec.getName());
+                return;
             }
+            Packet packet = deserialize(frame);
+            if (packet == null) {
+                return;
+            }
+            if (packet.getCommand() == null) {
+                ServerPacket answer = new ServerPacket(null, "Unknown command.", false, true)
+                        .answering(packet.getRequestId());
+                connection.getExecutor().execute(new Sender(connection, answer));
+                return;
+            }
+            if (packet.getCommand().isReadOnly()) {
+                connection.getExecutor().executeShared(new Handler(connection, packet));
+            } else {
+                connection.getExecutor().execute(new Handler(connection, packet));
+            }
+        });
+        return true;
+    }
 
-            senderExecutor.shutdown();
-            handlerPool.shutdown();
-
-        } catch (IOException ex) {
-            System.out.println(ex.getMessage());
-            logger.info(ex.getMessage());
-        }
+    void release() {
+        decoder.release();
     }
 
-    private Packet deserialize(byte[] bytes) {
+    private Packet deserialize(ByteBuffer frame) {
         try {
-            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
-            return (Packet) input.readObject();
-        } catch(IOException | ClassNotFoundException ex) {
+            return connection.getCodec().decodePacket(frame);
+        } catch(IOException | ClassCastException ex) {
             System.out.println(ex.getMessage());
         }
         return null;
     }
-}
\ No newline at end of file
+}
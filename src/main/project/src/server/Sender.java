@@ -1,54 +1,59 @@
 package src.server;
 
+import src.logic.Codec;
 import src.logic.ServerPacket;
+import src.logic.Snapshot;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
 
 public class Sender implements Runnable {
 
-    private SocketChannel socket;
+    private Connection connection;
     private ServerPacket answer;
-    private final int BUFFER_SIZE = 4096;
+    private boolean broadcast;
 
-    Sender(SocketChannel socket, ServerPacket answer) {
-        this.socket = socket;
-        this.answer = answer;
+    Sender(Connection connection, ServerPacket answer) {
+        this(connection, answer, false);
     }
 
-    @Override
-    public void run() {
-        try {
-
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-            buffer.clear();
+    /**
+     * Constructor
+     * @param connection - the connection to send to
+     * @param answer - the packet to send
+     * @param broadcast - true if the packet is a broadcast which can be dropped for a slow client
+     */
 
-            byte[] bytes = serializeObject(answer);
-            buffer = ByteBuffer.wrap(bytes);
+    Sender(Connection connection, ServerPacket answer, boolean broadcast) {
+        this.connection = connection;
+        this.answer = answer;
+        this.broadcast = broadcast;
+    }
 
-            while (buffer.hasRemaining()) {
-                socket.write(buffer);
+    /**
+     * Encodes the answer. An answer with a snapshot reuses the bytes of snapshot shared by all clients.
+     */
+
+    private ByteBuffer[] encode(Codec codec) throws IOException {
+        Snapshot snapshot = answer.getSnapshot();
+        if (snapshot != null) {
+            ByteBuffer[] frames = Server.server.getSnapshotCache()
+                    .frame(snapshot, codec, connection.isCompression(), answer.getRequestId());
+            if (frames != null) {
+                return frames;
             }
-            notify();
+        }
+        return new ByteBuffer[] {codec.encode(answer)};
+    }
 
+    @Override
+    public void run() {
+        try {
+            long version = answer.getKind() == ServerPacket.Kind.MESSAGE ? -1 : answer.getVersion();
+            connection.send(encode(connection.getCodec()), version, broadcast);
         } catch (IOException ex) {
             System.out.println(ex.getMessage());
-            notify();
         }
     }
 
-    private byte[] serializeObject(ServerPacket packet) throws IOException {
-
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-
-        objectOutputStream.writeObject(packet);
-        objectOutputStream.flush();
-
-        return byteArrayOutputStream.toByteArray();
-    }
-
-}
\ No newline at end of file
+}
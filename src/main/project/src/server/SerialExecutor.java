@@ -0,0 +1,97 @@
+package src.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Class of serial executor.
+ * Runs tasks one after another on a shared pool, so the order of requests of one connection is kept
+ * without holding a thread of the pool while the connection is idle.
+ * Shared tasks (read-only requests) which follow each other run at the same time,
+ * but never overtake an earlier ordinary task and are never overtaken by a later one.
+ */
+
+public class SerialExecutor implements Executor {
+
+    private final Queue<Task> tasks;
+    private final Executor executor;
+    private boolean exclusiveActive;
+    private int sharedActive;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+        tasks = new ArrayDeque<>();
+    }
+
+    @Override
+    synchronized public void execute(Runnable task) {
+        tasks.add(new Task(task, false));
+        scheduleNext();
+    }
+
+    /**
+     * Runs the task at the same time with the neighbouring shared tasks.
+     * @param task - the task which does not change the state
+     */
+
+    synchronized void executeShared(Runnable task) {
+        tasks.add(new Task(task, true));
+        scheduleNext();
+    }
+
+    synchronized private void finished(boolean shared) {
+        if (shared) {
+            sharedActive--;
+        } else {
+            exclusiveActive = false;
+        }
+        scheduleNext();
+    }
+
+    private void scheduleNext() {
+        Task task;
+        while (!exclusiveActive && (task = tasks.peek()) != null) {
+            if (task.shared) {
+                sharedActive++;
+            } else if (sharedActive == 0) {
+                exclusiveActive = true;
+            } else {
+                return;
+            }
+            tasks.poll();
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                // the server is stopping, requests which have not started are dropped
+                tasks.clear();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Class of queued task.
+     */
+
+    private class Task implements Runnable {
+
+        private final Runnable task;
+        private final boolean shared;
+
+        Task(Runnable task, boolean shared) {
+            this.task = task;
+            this.shared = shared;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished(shared);
+            }
+        }
+    }
+}
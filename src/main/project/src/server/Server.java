@@ -5,33 +5,91 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import src.database.DBManager;
+import src.database.StorageException;
+import src.database.User;
+import src.database.WriteBehindQueue;
 import src.logic.CollectionManager;
+import src.logic.ServerPacket;
+import src.logic.SnapshotCache;
+import src.logic.SnapshotFile;
+import src.metrics.Metrics;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.concurrent.Executor;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Server implements Runnable{
 
     public static Server server;
 
     private final int port;
+    private final int ioLoops;
+    private final int workers;
+    private final String executorMode;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long outboundLimit;
+    private final QueueMetrics queueMetrics;
+    private final SessionManager sessionManager;
+    private final SnapshotCache snapshotCache;
+    private final long SELECT_TIMEOUT = 500;
 
     private ServerSocketChannel serverSocket;
+    private Selector acceptSelector;
+    private EventLoop[] loops;
+    private ExecutorService workerPool;
+    private Set<Connection> connections;
     private CollectionManager collectionManager;
     private DBManager dbManager;
+    private SnapshotFile snapshotFile;
+    private MetricsEndpoint metricsEndpoint;
 
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
     public Server(int port) {
+        this(port, Integer.getInteger("server.ioLoops", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("server.workers", 20));
+    }
+
+    public Server(int port, int ioLoops, int workers) {
+        this(port, ioLoops, workers, null);
+    }
+
+    /**
+     * Constructor
+     * @param port - the port to listen
+     * @param ioLoops - the number of I/O loops serving the connections
+     * @param workers - the number of threads executing commands
+     * @param dbManager - the manager of database or null to connect to PostgreSQL
+     */
+
+    public Server(int port, int ioLoops, int workers, DBManager dbManager) {
         server = this;
+        this.dbManager = dbManager;
         this.port = port;
+        this.ioLoops = Math.max(1, ioLoops);
+        this.workers = Math.max(1, workers);
+        connections = ConcurrentHashMap.newKeySet();
+        slowConsumerPolicy = SlowConsumerPolicy.valueOf(
+                System.getProperty("server.slowConsumerPolicy", SlowConsumerPolicy.KEEP_LATEST.name()).toUpperCase());
+        outboundLimit = Long.getLong("server.outboundLimit", 4L << 20);
+        executorMode = System.getProperty("server.executor", "pool");
+        queueMetrics = new QueueMetrics();
+        sessionManager = new SessionManager();
+        snapshotCache = new SnapshotCache(Integer.getInteger("server.compressThreshold", 8192));
     }
 
     public static void main(String[] args) {
@@ -42,41 +100,111 @@ public class Server implements Runnable{
     public void run() {
         try {
 
-            dbManager = new DBManager();
+            if (dbManager == null) {
+                dbManager = new DBManager();
+            }
 
-            collectionManager = new CollectionManager(dbManager);
+            String snapshotPath = System.getProperty("server.snapshotFile");
+            if (snapshotPath != null) {
+                snapshotFile = new SnapshotFile(Paths.get(snapshotPath));
+            }
+            try {
+                collectionManager = new CollectionManager(dbManager, snapshotFile);
+            } catch (StorageException ex) {
+                logger.error("Unable to load the collection, the server is not started: {}", ex.getMessage());
+                dbManager.close();
+                return;
+            }
             logger.info("Collection was initialized correctly.");
+            if (dbManager.getWriteBehind() != null) {
+                dbManager.getWriteBehind().setFailureListener(this::notifyClients);
+            }
+
+            ScheduledExecutorService snapshotWriter = null;
+            if (snapshotFile != null) {
+                dbManager.setWriteListener(snapshotFile::markDirty);
+                long interval = Long.getLong("server.snapshotInterval", 60);
+                snapshotWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "snapshot-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                snapshotWriter.scheduleWithFixedDelay(this::saveSnapshot, interval, interval, TimeUnit.SECONDS);
+            }
 
             serverSocket = ServerSocketChannel.open();
-            serverSocket.bind(new InetSocketAddress("localhost", port));
+            serverSocket.bind(new InetSocketAddress("localhost", port), Integer.getInteger("server.backlog", 1024));
             serverSocket.configureBlocking(false);
-            logger.info("Server is working on:" + serverSocket.getLocalAddress());
+            acceptSelector = Selector.open();
+            serverSocket.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            logger.info("Server is working on: {}", serverSocket.getLocalAddress());
+
+            ScheduledExecutorService sessionPurger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-purger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long purgePeriod = Math.max(1000, sessionManager.getTtl() / 4);
+            sessionPurger.scheduleWithFixedDelay(sessionManager::purgeExpired, purgePeriod, purgePeriod,
+                    TimeUnit.MILLISECONDS);
 
-            ExecutorService readerExecutor = Executors.newFixedThreadPool(20);
+            workerPool = createWorkerPool();
             ExecutorService observerExecutor = Executors.newSingleThreadExecutor();
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            loops = new EventLoop[ioLoops];
+            Thread[] loopThreads = new Thread[ioLoops];
+            for (int i = 0; i < ioLoops; i++) {
+                loops[i] = new EventLoop(this);
+                loopThreads[i] = new Thread(loops[i], "io-loop-" + i);
+                loopThreads[i].start();
+            }
 
-            ArrayList<SocketChannel> socketChannels = new ArrayList<>();
+            Observer observer = new Observer(connections, collectionManager, observerExecutor);
+            collectionManager.addChangeListener(observer::schedule);
 
-        //    Observer observer = new Observer();
-        //    observer.start();
+            registerMetrics();
 
-            while (!(reader.ready() && reader.readLine().trim().equals("exit"))) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            int nextLoop = 0;
 
-                if (collectionManager.isChanged()) {
-                    observerExecutor.submit(new Observer(socketChannels, collectionManager));
-                    collectionManager.handleChanges();
+            while (true) {
+                if (reader.ready()) {
+                    String line = reader.readLine().trim();
+                    if (line.equals("exit")) {
+                        break;
+                    }
+                    if (line.equals("stats")) {
+                        System.out.println(queueMetrics);
+                        System.out.println(snapshotCache);
+                        WriteBehindQueue writeBehind = dbManager.getWriteBehind();
+                        if (writeBehind != null) {
+                            System.out.println("Write-behind [pending = " + writeBehind.getPending() + ", written = "
+                                    + writeBehind.getWritten() + ", batches = " + writeBehind.getBatches()
+                                    + ", lost = " + writeBehind.getLost() + "] ");
+                        }
+                    }
+                    if (line.equals("metrics")) {
+                        System.out.print(new MetricsEndpoint(this).report());
+                    }
                 }
 
                 try {
-                    SocketChannel socket = serverSocket.accept();
-                    if (socket != null) {
-                        socketChannels.add(socket);
-                        socket.configureBlocking(false);
-                        logger.info("Client has connected from:" + socket.getRemoteAddress());
-                        Reader readerThread = new Reader(socket);
-                        readerExecutor.submit(readerThread);
+                    if (acceptSelector.select(SELECT_TIMEOUT) > 0) {
+                        acceptSelector.selectedKeys().clear();
+                        SocketChannel socket;
+                        while ((socket = serverSocket.accept()) != null) {
+                            socket.configureBlocking(false);
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Client has connected from: {}", socket.getRemoteAddress());
+                            }
+                            EventLoop loop = loops[nextLoop];
+                            nextLoop = (nextLoop + 1) % loops.length;
+                            Connection connection = new Connection(socket, loop, workerPool,
+                                    slowConsumerPolicy, outboundLimit, queueMetrics);
+                            connection.setDrainListener(observer::schedule);
+                            connections.add(connection);
+                            loop.register(connection);
+                        }
                     }
                 }
                 catch (IOException ex) {
@@ -84,9 +212,29 @@ public class Server implements Runnable{
                 }
             }
 
-            readerExecutor.shutdown();
+            for (EventLoop loop : loops) {
+                loop.shutdown();
+            }
+            try {
+                for (Thread loopThread : loopThreads) {
+                    loopThread.join();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            awaitTermination(observerExecutor, "observer");
+            awaitTermination(workerPool, "workers");
+            sessionPurger.shutdownNow();
+            if (metricsEndpoint != null) {
+                metricsEndpoint.stop();
+            }
 
+            if (snapshotWriter != null) {
+                awaitTermination(snapshotWriter, "snapshot writer");
+                saveSnapshot();
+            }
             dbManager.close();
+            acceptSelector.close();
             serverSocket.close();
 
             logger.info("Server finished his work.");
@@ -97,17 +245,132 @@ public class Server implements Runnable{
         }
     }
 
-    synchronized public CollectionManager getCollectionManager() {
-        logger.info("getCollection");
+    /**
+     * Sends the message to every connected client, for example about a change which was not saved.
+     * @param message - the message
+     */
+
+    private void notifyClients(String message) {
+        ServerPacket packet = new ServerPacket(null, message, false, true);
+        for (Connection connection : connections) {
+            new Sender(connection, packet).run();
+        }
+    }
+
+    /**
+     * Stops the executor and waits for the tasks it has already taken, so no request is left half done.
+     */
+
+    private void awaitTermination(ExecutorService executor, String name) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("The {} did not finish in a minute.", name);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the executor of commands: the pool of server.workers threads, or a new virtual thread for every task
+     * if server.executor is "virtual". Commands wait for the database a lot, a virtual thread does not hold
+     * a platform thread while it waits, so the number of requests served at once follows the load.
+     * Virtual threads are looked up by reflection, on older JDKs the pool is used.
+     */
+
+    private ExecutorService createWorkerPool() {
+        if (executorMode.equalsIgnoreCase("virtual")) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logger.info("Commands are executed on virtual threads.");
+                return executor;
+            } catch (ReflectiveOperationException ex) {
+                logger.info("Virtual threads are not available, the pool of {} threads is used.", workers);
+            }
+        }
+        return Executors.newFixedThreadPool(workers);
+    }
+
+    /**
+     * Writes the collection to the snapshot file if the database was changed since the last write.
+     * In the write-behind mode the file is written only when the queue has reached the database.
+     */
+
+    private void saveSnapshot() {
+        WriteBehindQueue writeBehind = dbManager.getWriteBehind();
+        snapshotFile.write(collectionManager, () -> writeBehind == null || writeBehind.isDrained());
+    }
+
+    /**
+     * Registers the metrics in JMX as src.server:type=Metrics and, if server.metricsPort is set,
+     * starts the plain text endpoint on localhost.
+     */
+
+    private void registerMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(Metrics.shared, new ObjectName("src.server:type=Metrics"));
+        } catch (JMException ex) {
+            logger.warn("Unable to register metrics in JMX: {}", ex.getMessage());
+        }
+        Integer metricsPort = Integer.getInteger("server.metricsPort");
+        if (metricsPort != null) {
+            metricsEndpoint = new MetricsEndpoint(this);
+            try {
+                metricsEndpoint.start(metricsPort);
+            } catch (IOException ex) {
+                logger.warn("Unable to start the metrics endpoint: {}", ex.getMessage());
+                metricsEndpoint = null;
+            }
+        }
+    }
+
+    Set<Connection> getConnections() {
+        return connections;
+    }
+
+    void unregister(Connection connection) {
+        connections.remove(connection);
+    }
+
+    public SnapshotCache getSnapshotCache() {
+        return snapshotCache;
+    }
+
+    public QueueMetrics getQueueMetrics() {
+        return queueMetrics;
+    }
+
+    public CollectionManager getCollectionManager() {
         return collectionManager;
     }
 
-    synchronized public boolean checkUser(@NotNull final String login, @NotNull final String pass) {
-        logger.info("checkUser");
+    public boolean checkUser(@NotNull final String login, @NotNull final String pass) {
         return dbManager.checkUser(login, pass);
     }
 
-    synchronized public int registerUser(@NotNull final String login, @NotNull final String pass) {
+    /**
+     * Opens a session after the login and password were checked.
+     * @param login - the login of user
+     * @return the token which the client sends with every command
+     */
+
+    public String openSession(@NotNull final String login) {
+        return sessionManager.open(login);
+    }
+
+    /**
+     * Checks that the user has an alive session. Does not touch the database.
+     * @param user - the user from the packet
+     * @return true if the user may execute commands
+     */
+
+    public boolean authorize(final User user) {
+        return user != null && sessionManager.check(user.getToken(), user.getLogin());
+    }
+
+    public int registerUser(@NotNull final String login, @NotNull final String pass) {
         return dbManager.createUser(login, pass);
     }
 }
\ No newline at end of file
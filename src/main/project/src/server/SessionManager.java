@@ -0,0 +1,123 @@
+package src.server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class of session manager.
+ * Gives a user an opaque token after the login and keeps the table of tokens in memory,
+ * so commands are authorized without asking the database.
+ * A session expires when it has not been used for the given time.
+ */
+
+public class SessionManager {
+
+    private static final int TOKEN_SIZE = 24;
+
+    private final ConcurrentHashMap<String, Session> sessions;
+    private final SecureRandom random;
+    private final long ttl;
+
+    /**
+     * Constructor
+     * @param ttl - the time in milliseconds after which an unused session expires
+     */
+
+    public SessionManager(long ttl) {
+        this.ttl = ttl;
+        sessions = new ConcurrentHashMap<>();
+        random = new SecureRandom();
+    }
+
+    public SessionManager() {
+        this(TimeUnit.MINUTES.toMillis(Long.getLong("server.sessionTtlMinutes", 30)));
+    }
+
+    /**
+     * Opens a session for the user whose login and password were checked.
+     * @param login - the login of user
+     * @return the token of session
+     */
+
+    public String open(String login) {
+        byte[] bytes = new byte[TOKEN_SIZE];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(login, System.currentTimeMillis() + ttl));
+        return token;
+    }
+
+    /**
+     * Checks the token and prolongs the session.
+     * @param token - the token of session
+     * @param login - the login the client claims
+     * @return true if the session is alive and belongs to this login
+     */
+
+    public boolean check(String token, String login) {
+        if (token == null) {
+            return false;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAt < now) {
+            sessions.remove(token, session);
+            return false;
+        }
+        if (!session.login.equals(login)) {
+            return false;
+        }
+        session.expiresAt = now + ttl;
+        return true;
+    }
+
+    public void close(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * Removes expired sessions. Called by a timer, a session used after its expiry is also removed by check.
+     */
+
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Session>> iterator = sessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAt < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Class of session.
+     */
+
+    private static class Session {
+
+        private final String login;
+        private volatile long expiresAt;
+
+        Session(String login, long expiresAt) {
+            this.login = login;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package src.server;
+
+/**
+ * What to do with broadcasts for a client which reads slower than the collection changes.
+ * Answers to the client's own requests are never dropped.
+ */
+
+public enum SlowConsumerPolicy {
+    /**
+     * Broadcasts are not queued while the queue is over its limit, the client is brought up to date after it drains.
+     */
+    DROP_STALE,
+    /**
+     * Only the latest broadcast is kept, a new one replaces the queued broadcasts which were not started yet.
+     */
+    KEEP_LATEST,
+    /**
+     * The client is disconnected when its queue goes over the limit.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,204 @@
+package src.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Class of tests of the connection pool on a fake driver: waiting for a free connection
+ * and discarding broken connections.
+ */
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:pooltest:db";
+
+    private FakeDriver driver;
+
+    @Before
+    public void setUp() throws SQLException {
+        driver = new FakeDriver();
+        DriverManager.registerDriver(driver);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Test
+    public void borrowTimesOutWhenAllConnectionsAreBusy() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(URL, "user", "password", 0, 1, 100);
+        PooledConnection busy = pool.borrow();
+
+        long start = System.nanoTime();
+        try {
+            pool.borrow();
+            fail("a second connection was given out");
+        } catch (SQLException ex) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        busy.close();
+        try (PooledConnection connection = pool.borrow()) {
+            assertSame(busy, connection);
+        }
+        assertEquals(1, driver.opened.size());
+        pool.close();
+    }
+
+    @Test
+    public void waitingBorrowGetsReturnedConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, "user", "password", 1, 1, 5000);
+        PooledConnection busy = pool.borrow();
+        Thread returner = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            busy.close();
+        });
+        returner.start();
+
+        try (PooledConnection connection = pool.borrow()) {
+            assertSame(busy, connection);
+        }
+        returner.join();
+        assertEquals(1, driver.opened.size());
+        pool.close();
+    }
+
+    @Test
+    public void brokenConnectionIsDiscarded() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(URL, "user", "password", 0, 1, 100);
+        PooledConnection broken = pool.borrow();
+        broken.markBroken(new SQLException("Connection lost.", "08006"));
+        broken.close();
+
+        assertTrue(broken.getConnection().isClosed());
+        assertEquals(0, pool.getSize());
+        assertEquals(0, pool.getIdle());
+
+        try (PooledConnection connection = pool.borrow()) {
+            assertFalse(connection.getConnection().isClosed());
+        }
+        assertEquals(2, driver.opened.size());
+        assertEquals(1, pool.getIdle());
+        pool.close();
+    }
+
+    @Test
+    public void closedConnectionIsDiscarded() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(URL, "user", "password", 0, 2, 100);
+        PooledConnection connection = pool.borrow();
+        connection.getConnection().close();
+        connection.close();
+
+        assertEquals(0, pool.getSize());
+        assertEquals(0, pool.getIdle());
+        pool.close();
+    }
+
+    @Test
+    public void errorOfStatementKeepsConnection() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(URL, "user", "password", 0, 1, 100);
+        PooledConnection connection = pool.borrow();
+        connection.markBroken(new SQLException("Duplicate key.", "23505"));
+        connection.close();
+
+        assertFalse(connection.getConnection().isClosed());
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getIdle());
+        pool.close();
+    }
+
+    /**
+     * Class of driver which opens connections that only know whether they are closed.
+     */
+
+    private static class FakeDriver implements Driver {
+
+        private final List<Connection> opened = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            AtomicBoolean closed = new AtomicBoolean();
+            Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                closed.set(true);
+                                return null;
+                            case "isClosed":
+                                return closed.get();
+                            case "isValid":
+                                return !closed.get();
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "connection to " + url;
+                            default:
+                                throw new SQLFeatureNotSupportedException(method.getName());
+                        }
+                    });
+            opened.add(connection);
+            return connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:pooltest:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package src.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import src.elements.Coordinates;
+import src.elements.Location;
+import src.elements.Person;
+import src.elements.Product;
+import src.elements.UnitOfMeasure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class of tests of storage in a write-ahead log: the state is restored from the snapshot
+ * and the files of log written after it.
+ */
+
+public class LogStorageTest {
+
+    private Path directory;
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        System.setProperty("db.logCompactInterval", "0");
+        System.setProperty("db.logSync", "always");
+        directory = Files.createTempDirectory("log-storage-test");
+        path = directory.resolve("lab7.log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty("db.logCompactInterval");
+        System.clearProperty("db.logSync");
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void replaysSnapshotAndLaterSegments() throws Exception {
+        LogStorage storage = new LogStorage(path);
+        int apple;
+        int pear;
+        try {
+            apple = storage.createProduct(product("apple", 10));
+            pear = storage.createProduct(product("pear", 20));
+            int plum = storage.createProduct(product("plum", 30));
+            assertTrue(storage.createUser("user", "hash") > 0);
+            storage.deleteProduct(plum);
+            storage.compact();
+
+            Product cheaper = product("apple", 5);
+            cheaper.setId(apple);
+            storage.updateProduct(cheaper);
+            storage.deleteProducts(Arrays.asList(pear));
+            storage.createProduct(product("cherry", 40));
+        } finally {
+            storage.close();
+        }
+
+        assertTrue(Files.isRegularFile(path.resolveSibling("lab7.log.snapshot")));
+        assertEquals(Arrays.asList(2L), WriteAheadLog.generations(path));
+
+        LogStorage restored = new LogStorage(path);
+        try {
+            assertEquals(5L, (long) restored.readProduct("apple").getPrice());
+            assertNull(restored.readProduct("pear"));
+            assertNull(restored.readProduct("plum"));
+            assertEquals(4, restored.readProduct("cherry").getId());
+            assertTrue(restored.checkUser("user", "hash"));
+
+            List<Integer> ids = new ArrayList<>();
+            restored.readProducts(0, page -> page.forEach(product -> ids.add(product.getId())));
+            assertEquals(Arrays.asList(apple, 4), ids);
+            assertEquals(5, restored.createProduct(product("melon", 50)));
+        } finally {
+            restored.close();
+        }
+    }
+
+    @Test
+    public void compactionRemovesOldSegments() throws Exception {
+        LogStorage storage = new LogStorage(path);
+        try {
+            storage.createProduct(product("apple", 10));
+            storage.compact();
+            storage.compact();
+        } finally {
+            storage.close();
+        }
+
+        assertEquals(Arrays.asList(3L), WriteAheadLog.generations(path));
+        assertFalse(Files.exists(WriteAheadLog.segment(path, 1)));
+
+        LogStorage restored = new LogStorage(path);
+        try {
+            assertEquals(10L, (long) restored.readProduct("apple").getPrice());
+        } finally {
+            restored.close();
+        }
+    }
+
+    private static Product product(String name, long price) throws Exception {
+        Product product = new Product();
+        product.setName(name);
+        product.setCoordinates(new Coordinates(1.5f, 2.5));
+        product.setCreationDate(LocalDate.of(2024, 1, 2));
+        product.setPrice(price);
+        product.setPartNumber("PN-" + name);
+        product.setUnitOfMeasure(UnitOfMeasure.GRAMS);
+        product.setOwner(new Person("Owner", 180, "RED", new Location(1L, 2L, 3, "Home")));
+        product.setHost("user");
+        return product;
+    }
+}
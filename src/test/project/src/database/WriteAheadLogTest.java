@@ -0,0 +1,146 @@
+package src.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import src.logic.BinaryReader;
+import src.logic.BinaryWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class of tests of write-ahead log: a torn tail and a record with a wrong checksum end the replay.
+ */
+
+public class WriteAheadLogTest {
+
+    private Path directory;
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-test");
+        path = directory.resolve("test.log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void readsAppendedRecordsInOrder() throws IOException {
+        write(0, 1, 2, 3);
+
+        List<Integer> records = new ArrayList<>();
+        long valid = WriteAheadLog.read(path, record -> records.add(value(record)));
+
+        assertEquals(Arrays.asList(1, 2, 3), records);
+        assertEquals(Files.size(path), valid);
+    }
+
+    @Test
+    public void stopsAtTornTailAndAppendsAfterValidPart() throws IOException {
+        write(0, 1, 2, 3);
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+
+        List<Integer> records = new ArrayList<>();
+        long valid = WriteAheadLog.read(path, record -> records.add(value(record)));
+        assertEquals(Arrays.asList(1, 2), records);
+        assertTrue(valid < Files.size(path));
+
+        write(valid, 4);
+        records.clear();
+        long length = WriteAheadLog.read(path, record -> records.add(value(record)));
+        assertEquals(Arrays.asList(1, 2, 4), records);
+        assertEquals(Files.size(path), length);
+    }
+
+    @Test
+    public void stopsAtChecksumMismatch() throws IOException {
+        long afterFirst = write(0, 1);
+        write(afterFirst, 2, 3);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer payload = ByteBuffer.allocate(1);
+            long at = afterFirst + 8;
+            channel.read(payload, at);
+            payload.put(0, (byte) (payload.get(0) ^ 0x7F));
+            payload.rewind();
+            channel.write(payload, at);
+        }
+
+        List<Integer> records = new ArrayList<>();
+        long valid = WriteAheadLog.read(path, record -> records.add(value(record)));
+
+        assertEquals(Arrays.asList(1), records);
+        assertEquals(afterFirst, valid);
+    }
+
+    @Test
+    public void readsEveryGenerationAfterRoll() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(WriteAheadLog.segment(path, 1), 0, WriteAheadLog.Sync.ALWAYS, 0);
+        try {
+            assertTrue(log.append(record(1)));
+            assertTrue(log.roll(WriteAheadLog.segment(path, 2)));
+            assertTrue(log.append(record(2)));
+        } finally {
+            log.close();
+        }
+
+        assertEquals(Arrays.asList(1L, 2L), WriteAheadLog.generations(path));
+        List<Integer> records = new ArrayList<>();
+        for (long generation : WriteAheadLog.generations(path)) {
+            WriteAheadLog.read(WriteAheadLog.segment(path, generation), record -> records.add(value(record)));
+        }
+        assertEquals(Arrays.asList(1, 2), records);
+    }
+
+    /**
+     * Opens the log after its valid part, appends the values and closes it.
+     * @return the length of file after the appended records
+     */
+
+    private long write(long validLength, int ... values) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(path, validLength, WriteAheadLog.Sync.ALWAYS, 0);
+        try {
+            for (int value : values) {
+                assertTrue(log.append(record(value)));
+            }
+            return log.getSize();
+        } finally {
+            log.close();
+        }
+    }
+
+    private static BinaryWriter record(int value) {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeVarInt(value);
+        writer.writeString("record " + value);
+        return writer;
+    }
+
+    private static int value(ByteBuffer record) throws IOException {
+        BinaryReader reader = new BinaryReader(record);
+        int value = reader.readVarInt();
+        assertEquals("record " + value, reader.readString());
+        return value;
+    }
+}
@@ -0,0 +1,247 @@
+package src.logic;
+
+import org.junit.Test;
+import src.commands.Command_Query;
+import src.database.User;
+import src.elements.Coordinates;
+import src.elements.Location;
+import src.elements.Person;
+import src.elements.Product;
+import src.elements.UnitOfMeasure;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class of tests of the binary codec: every kind of packet is decoded to what was encoded.
+ */
+
+public class BinaryCodecTest {
+
+    private final BinaryCodec codec = new BinaryCodec();
+
+    @Test
+    public void packetRoundTrip() throws Exception {
+        User user = new User("user", "hash");
+        user.setId(7);
+        user.setToken("token");
+        Query query = Query.parse("price>=10", "name=apple", "sort=-price", "offset=5", "limit=20");
+        Packet packet = new Packet(new Command_Query(), user, query);
+        packet.setRequestId(300);
+
+        Packet decoded = codec.decodePacket(payload(codec.encode(packet)));
+
+        assertTrue(decoded.getCommand() instanceof Command_Query);
+        assertEquals(300, decoded.getRequestId());
+        assertEquals(7, decoded.getUser().getId());
+        assertEquals("user", decoded.getUser().getLogin());
+        assertEquals("hash", decoded.getUser().getPassword());
+        assertEquals("token", decoded.getUser().getToken());
+        assertQuery(query, (Query) decoded.getArgument());
+    }
+
+    @Test
+    public void packetWithoutCommandAndUser() throws Exception {
+        Packet packet = new Packet(null, null, new String[] {"a", "b", null});
+
+        Packet decoded = codec.decodePacket(payload(codec.encode(packet)));
+
+        assertNull(decoded.getCommand());
+        assertNull(decoded.getUser());
+        assertArrayEquals(new String[] {"a", "b", null}, (String[]) decoded.getArgument());
+    }
+
+    @Test
+    public void messageRoundTrip() throws Exception {
+        ServerPacket packet = new ServerPacket(null, "Done.", true, true).answering(42);
+
+        ServerPacket decoded = decode(codec.encode(packet));
+
+        assertEquals(42, decoded.getRequestId());
+        assertEquals(ServerPacket.Kind.MESSAGE, decoded.getKind());
+        assertEquals("Done.", decoded.getMessage());
+        assertTrue(decoded.getIsSuccessful());
+        assertTrue(decoded.getIsMessage());
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws Exception {
+        List<Product> products = Arrays.asList(product(1, "apple"), bare(2, "pear"));
+
+        ServerPacket decoded = decode(codec.encode(ServerPacket.snapshot(products, 9).answering(1)));
+
+        assertEquals(ServerPacket.Kind.SNAPSHOT, decoded.getKind());
+        assertEquals(9, decoded.getVersion());
+        assertProducts(products, (List<?>) decoded.getObject());
+    }
+
+    @Test
+    public void emptySnapshotRoundTrip() throws Exception {
+        ServerPacket decoded = decode(codec.encode(ServerPacket.snapshot(new ArrayList<>(), 0)));
+
+        assertTrue(((List<?>) decoded.getObject()).isEmpty());
+        assertFalse(decoded.getIsMessage());
+    }
+
+    @Test
+    public void pageRoundTrip() throws Exception {
+        Page page = new Page(Arrays.asList(product(3, "apple"), product(4, "plum")), 20, 75);
+
+        ServerPacket decoded = decode(codec.encode(ServerPacket.page(page, 11)));
+
+        assertEquals(ServerPacket.Kind.PAGE, decoded.getKind());
+        Page result = (Page) decoded.getObject();
+        assertEquals(20, result.getOffset());
+        assertEquals(75, result.getTotal());
+        assertProducts(page.getProducts(), result.getProducts());
+    }
+
+    @Test
+    public void chunkRoundTrip() throws Exception {
+        Chunk chunk = new Chunk(Arrays.asList(product(5, "apple")), 3, true);
+
+        ServerPacket decoded = decode(codec.encode(ServerPacket.chunk(chunk, 12)));
+
+        assertEquals(ServerPacket.Kind.CHUNK, decoded.getKind());
+        Chunk result = (Chunk) decoded.getObject();
+        assertEquals(3, result.getSequence());
+        assertTrue(result.isLast());
+        assertProducts(chunk.getProducts(), result.getProducts());
+    }
+
+    @Test
+    public void changeListRoundTrip() throws Exception {
+        List<ChangeEvent> changes = Arrays.asList(
+                new ChangeEvent(ChangeEvent.Type.ADD, 13, 6, product(6, "apple")),
+                new ChangeEvent(ChangeEvent.Type.UPDATE, 14, 6, bare(6, "pear")),
+                new ChangeEvent(ChangeEvent.Type.REMOVE, 15, 6, null));
+
+        ServerPacket decoded = decode(codec.encode(ServerPacket.delta(changes, 15)));
+
+        assertEquals(ServerPacket.Kind.DELTA, decoded.getKind());
+        assertEquals(15, decoded.getVersion());
+        List<?> result = (List<?>) decoded.getObject();
+        assertEquals(changes.size(), result.size());
+        for (int i = 0; i < changes.size(); i++) {
+            ChangeEvent expected = changes.get(i);
+            ChangeEvent actual = (ChangeEvent) result.get(i);
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(expected.getProductId(), actual.getProductId());
+            if (expected.getProduct() == null) {
+                assertNull(actual.getProduct());
+            } else {
+                assertProduct(expected.getProduct(), actual.getProduct());
+            }
+        }
+    }
+
+    @Test
+    public void readdressKeepsBodyAndChangesRequestId() throws Exception {
+        List<Product> products = Arrays.asList(product(1, "apple"));
+        ByteBuffer frame = codec.encode(ServerPacket.snapshot(products, 16));
+        ByteBuffer original = frame.duplicate();
+
+        for (long requestId : new long[] {1, 127, 128, 1L << 40}) {
+            ByteBuffer[] buffers = codec.readdress(frame, requestId);
+            ServerPacket decoded = decode(join(buffers));
+            assertEquals(requestId, decoded.getRequestId());
+            assertEquals(16, decoded.getVersion());
+            assertProducts(products, (List<?>) decoded.getObject());
+        }
+        assertEquals(original, frame);
+    }
+
+    @Test
+    public void readdressRefusesAnsweredFrame() throws Exception {
+        ByteBuffer frame = codec.encode(new ServerPacket(null, "Done.", true, true).answering(5));
+
+        assertNull(codec.readdress(frame, 6));
+    }
+
+    private ServerPacket decode(ByteBuffer frame) throws IOException {
+        ByteBuffer payload = payload(frame);
+        assertEquals(payload.remaining(), frame.getInt(frame.position()));
+        return codec.decodeServerPacket(payload);
+    }
+
+    private static ByteBuffer payload(ByteBuffer frame) {
+        ByteBuffer payload = frame.duplicate();
+        payload.position(payload.position() + FrameDecoder.HEADER_SIZE);
+        return payload.slice();
+    }
+
+    private static ByteBuffer join(ByteBuffer[] buffers) {
+        int size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(size);
+        for (ByteBuffer buffer : buffers) {
+            joined.put(buffer.duplicate());
+        }
+        joined.flip();
+        return joined;
+    }
+
+    private static void assertQuery(Query expected, Query actual) {
+        assertEquals(expected.getConditions().size(), actual.getConditions().size());
+        for (int i = 0; i < expected.getConditions().size(); i++) {
+            Query.Condition condition = expected.getConditions().get(i);
+            assertEquals(condition.getField(), actual.getConditions().get(i).getField());
+            assertEquals(condition.getMin(), actual.getConditions().get(i).getMin());
+            assertEquals(condition.getMax(), actual.getConditions().get(i).getMax());
+        }
+        assertEquals(expected.getSort(), actual.getSort());
+        assertEquals(expected.isDescending(), actual.isDescending());
+        assertEquals(expected.getOffset(), actual.getOffset());
+        assertEquals(expected.getLimit(), actual.getLimit());
+    }
+
+    private static void assertProducts(List<?> expected, List<?> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertProduct((Product) expected.get(i), (Product) actual.get(i));
+        }
+    }
+
+    private static void assertProduct(Product expected, Product actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getColor(), actual.getColor());
+    }
+
+    private static Product product(int id, String name) throws Exception {
+        Product product = bare(id, name);
+        product.setCoordinates(new Coordinates(1.5f, -2.5));
+        product.setCreationDate(LocalDate.of(2024, 1, 2));
+        product.setOwner(new Person("Owner", 180, "BLUE", new Location(-1L, 2L, 3, "Home")));
+        product.setColor(new Color(10, 20, 30));
+        return product;
+    }
+
+    /**
+     * Creates a product with only the fields which can not be absent in a packet.
+     */
+
+    private static Product bare(int id, String name) throws Exception {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(100L + id);
+        product.setPartNumber("PN-" + name);
+        product.setUnitOfMeasure(UnitOfMeasure.PCS);
+        product.setHost("user");
+        return product;
+    }
+}
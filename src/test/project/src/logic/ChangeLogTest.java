@@ -0,0 +1,61 @@
+package src.logic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class of tests of the change log: the ring gives the missed changes in order after it wraps around.
+ */
+
+public class ChangeLogTest {
+
+    @Test
+    public void keepsChangesInOrderAfterWrapAround() {
+        ChangeLog log = new ChangeLog(4);
+        for (int id = 1; id <= 10; id++) {
+            log.append(ChangeEvent.Type.ADD, id, null);
+        }
+
+        assertEquals(10, log.getVersion());
+        assertEquals(Arrays.asList(7L, 8L, 9L, 10L), versions(log.since(6)));
+        assertEquals(Arrays.asList(9L, 10L), versions(log.since(8)));
+        assertEquals(10, log.since(9).get(0).getProductId());
+    }
+
+    @Test
+    public void givesNothingForCurrentVersion() {
+        ChangeLog log = new ChangeLog(4);
+        for (int id = 1; id <= 5; id++) {
+            log.append(ChangeEvent.Type.UPDATE, id, null);
+        }
+
+        assertTrue(log.since(5).isEmpty());
+    }
+
+    @Test
+    public void refusesOverwrittenAndFutureVersions() {
+        ChangeLog log = new ChangeLog(4);
+        for (int id = 1; id <= 10; id++) {
+            log.append(ChangeEvent.Type.REMOVE, id, null);
+        }
+
+        assertNull(log.since(5));
+        assertNull(log.since(0));
+        assertNull(log.since(11));
+    }
+
+    private static List<Long> versions(List<ChangeEvent> changes) {
+        List<Long> versions = new ArrayList<>();
+        for (ChangeEvent change : changes) {
+            versions.add(change.getVersion());
+        }
+        return versions;
+    }
+}
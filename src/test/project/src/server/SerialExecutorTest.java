@@ -0,0 +1,114 @@
+package src.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class of tests of the serial executor: neighbouring shared tasks run together,
+ * ordinary tasks run alone and nothing overtakes an earlier task.
+ */
+
+public class SerialExecutorTest {
+
+    private ExecutorService pool;
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+        events = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void sharedTasksRunTogetherBetweenExclusiveOnes() throws Exception {
+        SerialExecutor executor = new SerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(5);
+        CyclicBarrier together = new CyclicBarrier(2);
+        AtomicBoolean overlapped = new AtomicBoolean(true);
+
+        executor.execute(task("A", done, () -> Thread.sleep(50)));
+        executor.executeShared(task("B", done, () -> await(together, overlapped)));
+        executor.executeShared(task("C", done, () -> await(together, overlapped)));
+        executor.execute(task("D", done, () -> Thread.sleep(20)));
+        executor.executeShared(task("E", done, () -> { }));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue("the shared tasks did not run at the same time", overlapped.get());
+        assertEquals(10, events.size());
+        assertTrue(index("A end") < index("B start"));
+        assertTrue(index("A end") < index("C start"));
+        assertTrue(index("B end") < index("D start"));
+        assertTrue(index("C end") < index("D start"));
+        assertTrue(index("D end") < index("E start"));
+    }
+
+    @Test
+    public void exclusiveTasksRunInOrderOfSubmission() throws Exception {
+        SerialExecutor executor = new SerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            int delay = i % 3;
+            executor.execute(task(String.valueOf(i), done, () -> Thread.sleep(delay)));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i + " start", events.get(2 * i));
+            assertEquals(i + " end", events.get(2 * i + 1));
+        }
+    }
+
+    /**
+     * Interface of body of test task.
+     */
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private Runnable task(String name, CountDownLatch done, Body body) {
+        return () -> {
+            events.add(name + " start");
+            try {
+                body.run();
+            } catch (Exception ex) {
+                events.add(name + " failed: " + ex);
+            }
+            events.add(name + " end");
+            done.countDown();
+        };
+    }
+
+    private static void await(CyclicBarrier barrier, AtomicBoolean overlapped) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            overlapped.set(false);
+        }
+    }
+
+    private int index(String event) {
+        int index = events.indexOf(event);
+        assertTrue("no event " + event, index >= 0);
+        return index;
+    }
+}